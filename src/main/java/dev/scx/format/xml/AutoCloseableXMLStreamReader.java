@@ -7,18 +7,29 @@ import javax.xml.stream.XMLStreamReader;
 
 /// AutoCloseableXMLStreamReader
 ///
+/// @param onClose reader 关闭之后执行 (比如归还 reader 正在读取的缓冲区), 可以为 null
 /// @author scx567888
 /// @version 0.0.1
-record AutoCloseableXMLStreamReader(XMLStreamReader2 reader) implements AutoCloseable {
+record AutoCloseableXMLStreamReader(XMLStreamReader2 reader, Runnable onClose) implements AutoCloseable {
 
     public static AutoCloseableXMLStreamReader wrapReader(XMLStreamReader reader) {
+        return wrapReader(reader, null);
+    }
+
+    public static AutoCloseableXMLStreamReader wrapReader(XMLStreamReader reader, Runnable onClose) {
         // 这里我们保证 XMLStreamReader 一定是 XMLStreamReader2
-        return new AutoCloseableXMLStreamReader((XMLStreamReader2) reader);
+        return new AutoCloseableXMLStreamReader((XMLStreamReader2) reader, onClose);
     }
 
     @Override
     public void close() throws XMLStreamException {
-        reader.closeCompletely();
+        try {
+            reader.closeCompletely();
+        } finally {
+            if (onClose != null) {
+                onClose.run();
+            }
+        }
     }
 
 }
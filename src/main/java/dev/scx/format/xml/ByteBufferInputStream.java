@@ -0,0 +1,50 @@
+package dev.scx.format.xml;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/// 读取 ByteBuffer 的 InputStream, 用于没有底层数组的 ByteBuffer (比如 DirectByteBuffer).
+///
+/// 读取的是 buffer 的一个副本, 不会修改原 buffer 的 position.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        var n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        var skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+}
@@ -0,0 +1,506 @@
+package dev.scx.format.xml;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+import com.ctc.wstx.stax.WstxOutputFactory;
+import dev.scx.format.xml.element.CompactDocument;
+import dev.scx.format.xml.element.Element;
+import org.codehaus.stax2.XMLInputFactory2;
+import org.codehaus.stax2.io.Stax2ByteArraySource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static com.ctc.wstx.api.WstxInputProperties.*;
+import static dev.scx.format.xml.AutoCloseableXMLStreamReader.wrapReader;
+import static dev.scx.format.xml.StaxXmlWriter.wrapWriter;
+import static dev.scx.format.xml.XmlDeserializer.deserialize;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/// 预编译的 XmlElementConverter.
+///
+/// 在构造时冻结一份 XmlNodeConverterOptions 快照, 并一次性创建 Woodstox 工厂和 XmlSerializer.
+/// 配置完成的 Woodstox 工厂是线程安全的, 所以同一个实例可以在多个线程之间共享.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class CompiledXmlElementConverter {
+
+    private final XmlNodeConverterOptions options;
+    private final WstxInputFactory xmlInputFactory;
+    private final WstxOutputFactory xmlOutputFactory;
+    private final XmlSerializer xmlSerializer;
+    // 为 null 时保留完整的文档
+    private final XmlProjection projection;
+    // FastXmlWriter 使用的 名称 -> UTF-8 字节 缓存
+    private final ConcurrentHashMap<String, byte[]> nameCache;
+    // 为 null 时只在 JFR 事件开启时统计
+    private final XmlMetricsListener metricsListener;
+    // 只在逐条读取记录时才需要, 按需创建
+    private volatile WstxInputFactory recordXmlInputFactory;
+    // 只在异步解析时才需要, 按需创建 (Aalto 是可选依赖, 这里不能直接引用 Aalto 的类型)
+    private volatile XmlAsyncParserFactory asyncParserFactory;
+
+    public CompiledXmlElementConverter(XmlNodeConverterOptions options) {
+        // 复制一份, 防止外部修改影响已创建的工厂
+        this.options = new XmlNodeConverterOptions(options);
+        this.xmlInputFactory = createWstxInputFactory(this.options);
+        this.xmlOutputFactory = createWstxOutputFactory(this.options);
+        this.xmlSerializer = new XmlSerializer(this.options);
+        this.projection = XmlProjection.of(this.options.projection());
+        this.nameCache = new ConcurrentHashMap<>();
+        this.metricsListener = this.options.metricsListener();
+    }
+
+    private static WstxInputFactory createWstxInputFactory(XmlNodeConverterOptions options) {
+        // 这里我们使用 WstxInputFactory, 因为默认 XMLInputFactory 功能过于羸弱
+        var xmlInputFactory = new WstxInputFactory();
+        //有很多的 安全限制 Woodstox  已经覆盖了 我们直接使用
+        xmlInputFactory.setProperty(P_MAX_ELEMENT_DEPTH, options.maxNestingDepth());
+        xmlInputFactory.setProperty(P_MAX_TEXT_LENGTH, options.maxStringLength());
+        xmlInputFactory.setProperty(P_MAX_ATTRIBUTE_SIZE, options.maxStringLength());
+        xmlInputFactory.setProperty(P_MAX_CHILDREN_PER_ELEMENT, options.maxChildCount());
+        xmlInputFactory.setProperty(P_MAX_ATTRIBUTES_PER_ELEMENT, options.maxChildCount());
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // 名称来自工厂内共享 (且有大小上限) 的符号表, 重复文档中的同名 key 不会重复分配.
+        // 符号表只在同一个工厂内共享, 也就是只有复用同一个 CompiledXmlElementConverter 时才有效,
+        // XmlElementConverter 的静态方法每次都会重新创建工厂, 无法共享.
+        // 这里显式设置 P_INTERN_NAMES 只是为了不依赖 Woodstox 的默认值, 比较名称时仍然使用 equals.
+        xmlInputFactory.setProperty(XMLInputFactory2.P_INTERN_NAMES, true);
+        // 合并相邻的文本和 CDATA, 减少事件数量, 也避免一段长文本被拆成多个文本节点
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, options.coalescing());
+        return xmlInputFactory;
+    }
+
+    private static WstxInputFactory createRecordWstxInputFactory(XmlNodeConverterOptions options) {
+        var xmlInputFactory = createWstxInputFactory(options);
+        // 记录的父元素可能拥有任意多个记录, 子元素数量限制改为在每条记录内部由我们自己校验
+        xmlInputFactory.setProperty(P_MAX_CHILDREN_PER_ELEMENT, Integer.MAX_VALUE);
+        return xmlInputFactory;
+    }
+
+    private static WstxOutputFactory createWstxOutputFactory(XmlNodeConverterOptions options) {
+        return new WstxOutputFactory();
+    }
+
+    AutoCloseableXMLStreamReader createXMLStreamReader(Reader reader) throws XMLStreamException {
+        return wrapReader(xmlInputFactory.createXMLStreamReader(reader));
+    }
+
+    AutoCloseableXMLStreamReader createXMLStreamReader(InputStream inputStream, String enc) throws XMLStreamException {
+        return wrapReader(xmlInputFactory.createXMLStreamReader(inputStream, enc));
+    }
+
+    /// 先将输入读入从 bufferPool 借出的 byte[]. 能完整放下时 (大多数单条消息) 同 [#createXMLStreamReader(byte[], int, int, Charset)],
+    /// 否则数组中的内容作为开头, 剩余部分继续从流中读取. 两种情况都按照 charset 解码, 结果与输入的长度无关.
+    /// 数组在 reader 关闭时归还
+    AutoCloseableXMLStreamReader createPooledXMLStreamReader(InputStream inputStream, Charset charset) throws XMLStreamException, IOException {
+        var bufferPool = options.bufferPool();
+        var buffer = bufferPool.acquireArray();
+        try {
+            var length = inputStream.readNBytes(buffer, 0, buffer.length);
+            AutoCloseableXMLStreamReader xmlStreamReader;
+            if (length < buffer.length) {
+                // 已经读取到末尾, 之后不再需要 inputStream
+                inputStream.close();
+                xmlStreamReader = createXMLStreamReader(buffer, 0, length, charset);
+            } else {
+                var head = new ByteArrayInputStream(buffer, 0, length);
+                xmlStreamReader = createXMLStreamReader(new SequenceInputStream(head, inputStream), charset.name());
+            }
+            return wrapReader(xmlStreamReader.reader(), () -> bufferPool.releaseArray(buffer));
+        } catch (XMLStreamException | IOException | RuntimeException e) {
+            bufferPool.releaseArray(buffer);
+            throw e;
+        }
+    }
+
+    /// 同 [#createPooledXMLStreamReader(InputStream, Charset)], 按照 charset 解码
+    AutoCloseableXMLStreamReader createXMLStreamReader(File file, Charset charset) throws XMLStreamException, IOException {
+        var inputStream = options.mappedFileInput() ? new MappedFileInputStream(file, options.fileBufferSize()) : new FileInputStream(file);
+        try {
+            // 映射的文件本身就是一块缓冲区, 无需再复制到池中的数组
+            return options.mappedFileInput() ? createXMLStreamReader(inputStream, charset.name()) : createPooledXMLStreamReader(inputStream, charset);
+        } catch (XMLStreamException | IOException e) {
+            // 创建失败时 reader 不会接管 inputStream, 需要我们自己关闭
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /// 按照 charset 解码, 同 [#createXMLStreamReader(InputStream, String)]
+    AutoCloseableXMLStreamReader createXMLStreamReader(byte[] bytes, int offset, int length, Charset charset) throws XMLStreamException {
+        // Woodstox 可以直接在字节数组上解码, 无需经过 InputStream 的缓冲和复制.
+        // 但这种方式总是根据 BOM 和 XML 声明识别编码 (默认 UTF-8), 所以只在识别的结果一定是 UTF-8 时使用
+        if (UTF_8.equals(charset) && _detectsUtf8(bytes, offset, length)) {
+            return wrapReader(xmlInputFactory.createXMLStreamReader(new Stax2ByteArraySource(bytes, offset, length)));
+        }
+        return createXMLStreamReader(new ByteArrayInputStream(bytes, offset, length), charset.name());
+    }
+
+    /// 没有 UTF-16/32 的 BOM, 并且没有 XML 声明, 声明中没有 encoding 或 encoding 为 UTF-8 时, Woodstox 识别的编码为 UTF-8
+    private static boolean _detectsUtf8(byte[] bytes, int offset, int length) {
+        var end = offset + length;
+        var i = offset;
+        if (length >= 3 && bytes[i] == (byte) 0xEF && bytes[i + 1] == (byte) 0xBB && bytes[i + 2] == (byte) 0xBF) {
+            i = i + 3;
+        }
+        // UTF-16/32 的 BOM, 或者 '<' 的编码中含有 0
+        if (end - i >= 2 && (bytes[i] == (byte) 0xFE || bytes[i] == (byte) 0xFF || bytes[i] == 0 || bytes[i + 1] == 0)) {
+            return false;
+        }
+        if (!_startsWith(bytes, i, end, "<?xml")) {
+            return true;
+        }
+        // 声明只允许 ASCII, 可以直接在字节上查找
+        var declarationEnd = i;
+        while (declarationEnd < end - 1 && !(bytes[declarationEnd] == '?' && bytes[declarationEnd + 1] == '>')) {
+            declarationEnd++;
+        }
+        var declaration = new String(bytes, i, declarationEnd - i, ISO_8859_1);
+        var index = declaration.indexOf("encoding");
+        if (index < 0) {
+            return true;
+        }
+        var quote = index + "encoding".length();
+        while (quote < declaration.length() && declaration.charAt(quote) != '"' && declaration.charAt(quote) != '\'') {
+            quote++;
+        }
+        var valueEnd = quote + 1 < declaration.length() ? declaration.indexOf(declaration.charAt(quote), quote + 1) : -1;
+        if (valueEnd < 0) {
+            return false;
+        }
+        var encoding = declaration.substring(quote + 1, valueEnd);
+        return "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding);
+    }
+
+    private static boolean _startsWith(byte[] bytes, int offset, int end, String prefix) {
+        if (end - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /// 不会修改 buffer 的 position
+    AutoCloseableXMLStreamReader createXMLStreamReader(ByteBuffer buffer, Charset charset) throws XMLStreamException {
+        // 堆内存 直接使用底层数组
+        if (buffer.hasArray()) {
+            return createXMLStreamReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), charset);
+        }
+        // 直接内存 (或只读) 无法避免一次复制
+        return createXMLStreamReader(new ByteBufferInputStream(buffer), charset.name());
+    }
+
+    AutoCloseableXMLStreamReader createRecordXMLStreamReader(Reader reader) throws XMLStreamException {
+        return wrapReader(recordXmlInputFactory().createXMLStreamReader(reader));
+    }
+
+    AutoCloseableXMLStreamReader createRecordXMLStreamReader(InputStream inputStream, String enc) throws XMLStreamException {
+        return wrapReader(recordXmlInputFactory().createXMLStreamReader(inputStream, enc));
+    }
+
+    AutoCloseableXMLStreamReader createRecordXMLStreamReader(File file, Charset charset) throws XMLStreamException, IOException {
+        var inputStream = options.mappedFileInput() ? new MappedFileInputStream(file, options.fileBufferSize()) : new FileInputStream(file);
+        try {
+            return createRecordXMLStreamReader(inputStream, charset.name());
+        } catch (XMLStreamException e) {
+            // 创建失败时 reader 不会接管 inputStream, 需要我们自己关闭
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    private WstxInputFactory recordXmlInputFactory() {
+        var factory = recordXmlInputFactory;
+        if (factory == null) {
+            // 并发时可能会重复创建, 但每个都是等价的, 所以无需加锁
+            factory = createRecordWstxInputFactory(options);
+            recordXmlInputFactory = factory;
+        }
+        return factory;
+    }
+
+    private XmlAsyncParserFactory asyncParserFactory() {
+        var factory = asyncParserFactory;
+        if (factory == null) {
+            // 并发时可能会重复创建, 但每个都是等价的, 所以无需加锁
+            factory = new XmlAsyncParserFactory(options);
+            asyncParserFactory = factory;
+        }
+        return factory;
+    }
+
+    XmlProjection projection() {
+        return projection;
+    }
+
+    OutputStream createFileOutputStream(File file) throws IOException {
+        if (options.channelFileOutput()) {
+            return new FileChannelOutputStream(file, options.fileBufferSize(), options.bufferPool());
+        }
+        return new FileOutputStream(file);
+    }
+
+    XmlWriter createXmlWriter(Writer writer) throws XMLStreamException {
+        return wrapWriter(xmlOutputFactory.createXMLStreamWriter(writer));
+    }
+
+    XmlWriter createXmlWriter(OutputStream outputStream, Charset charset) throws XMLStreamException {
+        if (useFastXmlWriter(charset)) {
+            return new FastXmlWriter(outputStream, nameCache, options.bufferPool());
+        }
+        return wrapWriter(xmlOutputFactory.createXMLStreamWriter(outputStream, charset.name()));
+    }
+
+    /// 用完后需要调用 [PooledByteArrayOutputStream#release()]
+    PooledByteArrayOutputStream createPooledByteArrayOutputStream() {
+        return new PooledByteArrayOutputStream(options.bufferPool());
+    }
+
+    /// 写出到 byte[] 时可以省去 ByteArrayOutputStream
+    FastXmlWriter createFastXmlWriter() {
+        return new FastXmlWriter(null, nameCache, options.bufferPool());
+    }
+
+    boolean useFastXmlWriter(Charset charset) {
+        return options.writerBackend() == XmlWriterBackend.FAST && UTF_8.equals(charset);
+    }
+
+    /// 未配置 metricsListener 且 JFR 事件未开启时返回 [XmlProbe#NOOP]
+    XmlProbe probe(XmlOperation operation) {
+        return XmlProbe.begin(metricsListener, operation);
+    }
+
+    public Element formatToElement(Reader reader) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        try (probe; var xmlStreamReader = createXMLStreamReader(reader)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public Element formatToElement(InputStream inputStream, Charset charset) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        try (probe; var xmlStreamReader = createPooledXMLStreamReader(probe.input(inputStream), charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public Element formatToElement(String text) throws XMLStreamException, IOException {
+        // Woodstox 对字符输入总是经过 Reader 读取, Stax2CharArraySource 反而会多一次 toCharArray 复制
+        try (var reader = new StringReader(text)) {
+            return formatToElement(reader);
+        }
+    }
+
+    public Element formatToElement(byte[] bytes, Charset charset) throws XMLStreamException, IOException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        probe.bytesIn(bytes.length);
+        try (probe; var xmlStreamReader = createXMLStreamReader(bytes, 0, bytes.length, charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    /// 解析 buffer 中 position 到 limit 之间的内容, 不会修改 buffer 的 position
+    public Element formatToElement(ByteBuffer buffer, Charset charset) throws XMLStreamException, IOException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        probe.bytesIn(buffer.remaining());
+        try (probe; var xmlStreamReader = createXMLStreamReader(buffer, charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public Element formatToElement(File file, Charset charset) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        probe.bytesIn(file);
+        try (probe; var xmlStreamReader = createXMLStreamReader(file, charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public void elementToFormat(Element element, Writer writer) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.ELEMENT_TO_FORMAT);
+        try (probe; var xmlWriter = probe.writer(createXmlWriter(writer))) {
+            xmlSerializer.serialize(xmlWriter, element);
+        }
+    }
+
+    public void elementToFormat(Element element, OutputStream outputStream, Charset charset) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.ELEMENT_TO_FORMAT);
+        try (probe; var xmlWriter = probe.writer(createXmlWriter(probe.output(outputStream), charset))) {
+            xmlSerializer.serialize(xmlWriter, element);
+        }
+    }
+
+    public String elementToFormatString(Element element) throws IOException, XMLStreamException {
+        try (var writer = new StringWriter()) {
+            elementToFormat(element, writer);
+            return writer.toString();
+        }
+    }
+
+    public byte[] elementToFormatBytes(Element element, Charset charset) throws IOException, XMLStreamException {
+        if (useFastXmlWriter(charset)) {
+            var probe = probe(XmlOperation.ELEMENT_TO_FORMAT);
+            try (probe; var xmlWriter = createFastXmlWriter()) {
+                var writer = probe.writer(xmlWriter);
+                xmlSerializer.serialize(writer, element);
+                writer.close();
+                var bytes = xmlWriter.toByteArray();
+                probe.bytesOut(bytes.length);
+                return bytes;
+            }
+        }
+        var outputStream = createPooledByteArrayOutputStream();
+        try {
+            elementToFormat(element, outputStream, charset);
+            return outputStream.toByteArray();
+        } finally {
+            outputStream.release();
+        }
+    }
+
+    public File elementToFormatFile(Element element, File file, Charset charset) throws IOException, XMLStreamException {
+        try (var outputStream = createFileOutputStream(file)) {
+            elementToFormat(element, outputStream, charset);
+            return file;
+        }
+    }
+
+    //***************** CompactDocument 相关方法 *******************
+
+    /// 统计信息记为 [XmlOperation#FORMAT_TO_ELEMENT]
+    public CompactDocument formatToCompactDocument(Reader reader) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        try (probe; var xmlStreamReader = createXMLStreamReader(reader)) {
+            return XmlCompactDeserializer.deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public CompactDocument formatToCompactDocument(InputStream inputStream, Charset charset) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        try (probe; var xmlStreamReader = createPooledXMLStreamReader(probe.input(inputStream), charset)) {
+            return XmlCompactDeserializer.deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public CompactDocument formatToCompactDocument(String text) throws XMLStreamException, IOException {
+        try (var reader = new StringReader(text)) {
+            return formatToCompactDocument(reader);
+        }
+    }
+
+    public CompactDocument formatToCompactDocument(byte[] bytes, Charset charset) throws XMLStreamException, IOException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        probe.bytesIn(bytes.length);
+        try (probe; var xmlStreamReader = createXMLStreamReader(bytes, 0, bytes.length, charset)) {
+            return XmlCompactDeserializer.deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    public CompactDocument formatToCompactDocument(File file, Charset charset) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        probe.bytesIn(file);
+        try (probe; var xmlStreamReader = createXMLStreamReader(file, charset)) {
+            return XmlCompactDeserializer.deserialize(probe.reader(xmlStreamReader.reader()), projection);
+        }
+    }
+
+    /// 统计信息记为 [XmlOperation#ELEMENT_TO_FORMAT]
+    public void compactDocumentToFormat(CompactDocument document, Writer writer) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.ELEMENT_TO_FORMAT);
+        try (probe; var xmlWriter = probe.writer(createXmlWriter(writer))) {
+            xmlSerializer.serialize(xmlWriter, document);
+        }
+    }
+
+    public void compactDocumentToFormat(CompactDocument document, OutputStream outputStream, Charset charset) throws IOException, XMLStreamException {
+        var probe = probe(XmlOperation.ELEMENT_TO_FORMAT);
+        try (probe; var xmlWriter = probe.writer(createXmlWriter(probe.output(outputStream), charset))) {
+            xmlSerializer.serialize(xmlWriter, document);
+        }
+    }
+
+    public String compactDocumentToFormatString(CompactDocument document) throws IOException, XMLStreamException {
+        try (var writer = new StringWriter()) {
+            compactDocumentToFormat(document, writer);
+            return writer.toString();
+        }
+    }
+
+    public byte[] compactDocumentToFormatBytes(CompactDocument document, Charset charset) throws IOException, XMLStreamException {
+        var outputStream = createPooledByteArrayOutputStream();
+        try {
+            compactDocumentToFormat(document, outputStream, charset);
+            return outputStream.toByteArray();
+        } finally {
+            outputStream.release();
+        }
+    }
+
+    /// 在一次前向读取中执行查询, 只有命中的元素才会被构建.
+    ///
+    /// 返回的 Stream 是惰性的, 读取完毕后会自动释放资源, 提前结束时请关闭 Stream.
+    /// 读取过程中的解析错误会以 FormatToNodeException 抛出.
+    /// 统计信息记为 [XmlOperation#FORMAT_TO_ELEMENT], 在 Stream 读取完毕或被关闭时提交.
+    ///
+    /// @throws IllegalArgumentException 查询的是属性时 (属性值无法表示为 Element), 请使用 CompiledXmlNodeConverter 的 query
+    public Stream<Element> query(Reader reader, XmlQuery query) throws XMLStreamException {
+        _checkElementQuery(query);
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        try {
+            var xmlStreamReader = probe.reader(createXMLStreamReader(reader));
+            return new XmlQueryIterator<Element>(xmlStreamReader, query, XmlDeserializer::deserializeElement, null).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw e;
+        }
+    }
+
+    /// 同 [#query(Reader, XmlQuery)]
+    public Stream<Element> query(InputStream inputStream, Charset charset, XmlQuery query) throws XMLStreamException {
+        _checkElementQuery(query);
+        var probe = probe(XmlOperation.FORMAT_TO_ELEMENT);
+        try {
+            var xmlStreamReader = probe.reader(createXMLStreamReader(probe.input(inputStream), charset.name()));
+            return new XmlQueryIterator<Element>(xmlStreamReader, query, XmlDeserializer::deserializeElement, null).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw e;
+        }
+    }
+
+    private static void _checkElementQuery(XmlQuery query) {
+        if (query.selectsAttribute()) {
+            throw new IllegalArgumentException("Query selects attributes, which cannot be represented as Element : " + query);
+        }
+    }
+
+    /// 创建一个非阻塞的增量解析器, 详见 [XmlAsyncParser]
+    ///
+    /// 这是唯一会加载 Aalto 的方法, 需要调用方自行引入可选依赖 aalto-xml, 否则抛出 NoClassDefFoundError.
+    public XmlAsyncParser createAsyncParser() {
+        return asyncParserFactory().createAsyncParser(probe(XmlOperation.FORMAT_TO_ELEMENT));
+    }
+
+    /// 返回一份配置副本, 修改副本不会影响当前实例
+    public XmlNodeConverterOptions options() {
+        return new XmlNodeConverterOptions(options);
+    }
+
+    /// 内部使用, 调用方不允许修改
+    XmlNodeConverterOptions options0() {
+        return options;
+    }
+
+}
@@ -0,0 +1,349 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.FormatToNodeException;
+import dev.scx.format.NodeToFormatException;
+import dev.scx.node.Node;
+import dev.scx.node.StringNode;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static dev.scx.format.xml.XmlNodeDeserializer.deserialize;
+
+/// 预编译的 XmlNodeConverter.
+///
+/// 在构造时冻结一份 XmlNodeConverterOptions 快照, 并一次性创建 Woodstox 工厂, ElementNodeConverter 和 XmlNodeSerializer.
+/// 所有内部组件在创建后都不再修改, 所以同一个实例可以在多个线程之间共享.
+///
+/// formatToNode 和 nodeToFormat 直接在 XML 事件流和 Node 之间转换, 不会生成中间的 Element 树.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class CompiledXmlNodeConverter {
+
+    private final CompiledXmlElementConverter xmlElementConverter;
+    private final ElementNodeConverter elementNodeConverter;
+    private final XmlNodeSerializer xmlNodeSerializer;
+    private final int maxChildCount;
+    private final int batchConcurrency;
+
+    public CompiledXmlNodeConverter(XmlNodeConverterOptions options) {
+        this.xmlElementConverter = new CompiledXmlElementConverter(options);
+        this.elementNodeConverter = new ElementNodeConverter(options);
+        this.xmlNodeSerializer = new XmlNodeSerializer(options);
+        this.maxChildCount = options.maxChildCount();
+        this.batchConcurrency = options.batchConcurrency();
+    }
+
+    public Node formatToNode(Reader reader) throws FormatToNodeException, IOException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        try (probe; var xmlStreamReader = xmlElementConverter.createXMLStreamReader(reader)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), xmlElementConverter.projection());
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    public Node formatToNode(InputStream inputStream, Charset charset) throws FormatToNodeException, IOException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        try (probe; var xmlStreamReader = xmlElementConverter.createPooledXMLStreamReader(probe.input(inputStream), charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), xmlElementConverter.projection());
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    public Node formatToNode(String text) throws FormatToNodeException {
+        try (var reader = new StringReader(text)) {
+            return formatToNode(reader);
+        } catch (IOException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    public Node formatToNode(byte[] bytes, Charset charset) throws FormatToNodeException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        probe.bytesIn(bytes.length);
+        try (probe; var xmlStreamReader = xmlElementConverter.createXMLStreamReader(bytes, 0, bytes.length, charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), xmlElementConverter.projection());
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 解析 buffer 中 position 到 limit 之间的内容, 不会修改 buffer 的 position.
+    /// 堆内存的 buffer 直接在底层数组上解析, 直接内存的 buffer 需要复制一次
+    public Node formatToNode(ByteBuffer buffer, Charset charset) throws FormatToNodeException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        probe.bytesIn(buffer.remaining());
+        try (probe; var xmlStreamReader = xmlElementConverter.createXMLStreamReader(buffer, charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), xmlElementConverter.projection());
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    public Node formatToNode(File file, Charset charset) throws FormatToNodeException, IOException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        probe.bytesIn(file);
+        try (probe) {
+            return _formatToNode(file, charset, probe);
+        }
+    }
+
+    private Node _formatToNode(File file, Charset charset, XmlProbe probe) throws FormatToNodeException, IOException {
+        try (var xmlStreamReader = xmlElementConverter.createXMLStreamReader(file, charset)) {
+            return deserialize(probe.reader(xmlStreamReader.reader()), xmlElementConverter.projection());
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 同 [#formatToNode(File, Charset)], 但将根元素的内容按 parallelChunkSize 切分为多块并行解析, 适用于根元素下有大量记录的大文件.
+    ///
+    /// 无法安全切分 (详见 [XmlChunkedParser]), 配置了 projection 或任何一块解析失败时, 回退到顺序解析, 结果完全一致.
+    /// 并行解析成功时, 统计信息中的元素, 属性和文本数量以及深度记为 -1. 回退时计入同一次统计, 数量为顺序解析的结果, 耗时包括失败的并行解析.
+    public Node formatToNodeParallel(File file, Charset charset) throws FormatToNodeException, IOException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        probe.bytesIn(file);
+        try (probe) {
+            var parser = xmlElementConverter.projection() == null ? XmlChunkedParser.open(xmlElementConverter, file, charset, null) : null;
+            if (parser != null) {
+                var node = parser.parse();
+                if (node != null) {
+                    probe.unknownCounts();
+                    probe.success();
+                    return node;
+                }
+            }
+            return _formatToNode(file, charset, probe);
+        }
+    }
+
+    /// 批量转换多个相互独立的文档. 每个文档在单独的虚拟线程上转换, 同一时间最多转换 batchConcurrency 个.
+    ///
+    /// 结果按输入顺序返回, 单个文档的异常记录在对应的 [XmlBatchResult] 中, 不会影响其他文档.
+    /// 调用线程被中断时抛出 CancellationException, 已经开始的文档会先转换完毕.
+    public List<XmlBatchResult<Node>> formatToNodeAll(List<byte[]> inputs, Charset charset) {
+        return XmlBatchExecutor.run(inputs.iterator(), batchConcurrency, bytes -> formatToNode(bytes, charset));
+    }
+
+    /// 同 [#formatToNodeAll(List, Charset)], 每个 InputStream 在转换完成后关闭.
+    /// Stream 只有在获取到并发许可后才会被读取下一个元素, Stream 本身需要调用方关闭
+    public List<XmlBatchResult<Node>> formatToNodeAll(Stream<? extends InputStream> inputs, Charset charset) {
+        return XmlBatchExecutor.run(inputs.iterator(), batchConcurrency, inputStream -> {
+            try (inputStream) {
+                return formatToNode(inputStream, charset);
+            }
+        });
+    }
+
+    /// 逐条读取 recordPath 命中的元素, 每条记录按照 [ElementNodeConverter#elementToNode(dev.scx.format.xml.element.Element)] 的规则转换.
+    ///
+    /// 返回的 Stream 是惰性的, 内存占用只取决于最大的单条记录. maxChildCount 作用于每条记录内部, 而不是记录的父元素.
+    /// 读取完毕后会自动释放资源, 提前结束时请关闭 Stream.
+    /// 统计信息记为 [XmlOperation#FORMAT_TO_NODE], 在 Stream 读取完毕或被关闭时提交, 提前关闭时视为未成功.
+    ///
+    /// @param recordPath 形如 `/root/item`, `*` 表示匹配任意名称
+    public Stream<Node> streamRecords(Reader reader, String recordPath) throws FormatToNodeException {
+        // 先校验路径, 避免创建 reader 之后才失败
+        var path = XmlRecordIterator.parseRecordPath(recordPath);
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        try {
+            var xmlStreamReader = probe.reader(xmlElementConverter.createRecordXMLStreamReader(reader));
+            return new XmlRecordIterator(xmlStreamReader, path, maxChildCount).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 同 [#streamRecords(Reader, String)]
+    public Stream<Node> streamRecords(InputStream inputStream, Charset charset, String recordPath) throws FormatToNodeException {
+        // 先校验路径, 避免创建 reader 之后才失败
+        var path = XmlRecordIterator.parseRecordPath(recordPath);
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        try {
+            var xmlStreamReader = probe.reader(xmlElementConverter.createRecordXMLStreamReader(probe.input(inputStream), charset.name()));
+            return new XmlRecordIterator(xmlStreamReader, path, maxChildCount).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 同 [#streamRecords(Reader, String)], 但按 parallelChunkSize 切分文件并行解析, 记录依然按原顺序返回.
+    ///
+    /// 只有 recordPath 为两层 (即根元素的子元素, 如 `/root/item`) 时才会并行, 否则以及无法安全切分时使用顺序读取.
+    /// 某一块解析失败时, 从头顺序读取并跳过已经返回的记录.
+    /// 并行读取时, 统计信息中的元素, 属性和文本数量以及深度记为 -1. 回退时计入同一次统计, 数量为顺序读取的结果.
+    public Stream<Node> streamRecordsParallel(File file, Charset charset, String recordPath) throws FormatToNodeException, IOException {
+        // 先校验路径, 避免扫描文件之后才失败
+        var path = XmlRecordIterator.parseRecordPath(recordPath);
+        var parser = path.length == 2 ? XmlChunkedParser.open(xmlElementConverter, file, charset, path[1]) : null;
+        if (parser != null && ("*".equals(path[0]) || path[0].equals(parser.rootName()))) {
+            var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+            probe.bytesIn(file);
+            probe.unknownCounts();
+            return parser.stream(path[1], probe, () -> {
+                // 顺序读取整个文件, 数量重新开始统计
+                probe.resetCounts();
+                try {
+                    return _streamRecords(file, charset, path, probe);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return _streamRecords(file, charset, path, xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE));
+    }
+
+    private Stream<Node> _streamRecords(File file, Charset charset, String[] path, XmlProbe probe) throws FormatToNodeException, IOException {
+        probe.bytesIn(file);
+        try {
+            var xmlStreamReader = probe.reader(xmlElementConverter.createRecordXMLStreamReader(file, charset));
+            return new XmlRecordIterator(xmlStreamReader, path, maxChildCount).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 在一次前向读取中执行查询, 命中的元素按照 [ElementNodeConverter#elementToNode(dev.scx.format.xml.element.Element)] 的规则转换, 命中的属性转换为 StringNode.
+    ///
+    /// 返回的 Stream 是惰性的, 不在查询路径上的子树会被直接跳过. 读取完毕后会自动释放资源, 提前结束时请关闭 Stream.
+    /// 统计信息同 [#streamRecords(Reader, String)].
+    public Stream<Node> query(Reader reader, XmlQuery query) throws FormatToNodeException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        try {
+            var xmlStreamReader = probe.reader(xmlElementConverter.createXMLStreamReader(reader));
+            return new XmlQueryIterator<Node>(xmlStreamReader, query, XmlNodeDeserializer::deserializeElement, StringNode::new).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 同 [#query(Reader, XmlQuery)]
+    public Stream<Node> query(InputStream inputStream, Charset charset, XmlQuery query) throws FormatToNodeException {
+        var probe = xmlElementConverter.probe(XmlOperation.FORMAT_TO_NODE);
+        try {
+            var xmlStreamReader = probe.reader(xmlElementConverter.createXMLStreamReader(probe.input(inputStream), charset.name()));
+            return new XmlQueryIterator<Node>(xmlStreamReader, query, XmlNodeDeserializer::deserializeElement, StringNode::new).stream();
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 创建一个非阻塞的增量解析器, 解析完成后可通过 [XmlAsyncParser#node()] 获取 Node
+    public XmlAsyncParser createAsyncParser() {
+        return xmlElementConverter.createAsyncParser();
+    }
+
+    public void nodeToFormat(Node node, Writer writer) throws NodeToFormatException, IOException {
+        var probe = xmlElementConverter.probe(XmlOperation.NODE_TO_FORMAT);
+        try (probe; var xmlWriter = probe.writer(xmlElementConverter.createXmlWriter(writer))) {
+            xmlNodeSerializer.serialize(xmlWriter, node);
+        } catch (XMLStreamException e) {
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    public void nodeToFormat(Node node, OutputStream outputStream, Charset charset) throws NodeToFormatException, IOException {
+        var probe = xmlElementConverter.probe(XmlOperation.NODE_TO_FORMAT);
+        try (probe; var xmlWriter = probe.writer(xmlElementConverter.createXmlWriter(probe.output(outputStream), charset))) {
+            xmlNodeSerializer.serialize(xmlWriter, node);
+        } catch (XMLStreamException e) {
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    public String nodeToFormatString(Node node) throws NodeToFormatException {
+        try (var writer = new StringWriter()) {
+            nodeToFormat(node, writer);
+            return writer.toString();
+        } catch (IOException e) {
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    public byte[] nodeToFormatBytes(Node node, Charset charset) throws NodeToFormatException {
+        if (xmlElementConverter.useFastXmlWriter(charset)) {
+            var probe = xmlElementConverter.probe(XmlOperation.NODE_TO_FORMAT);
+            try (probe; var xmlWriter = xmlElementConverter.createFastXmlWriter()) {
+                var writer = probe.writer(xmlWriter);
+                xmlNodeSerializer.serialize(writer, node);
+                writer.close();
+                var bytes = xmlWriter.toByteArray();
+                probe.bytesOut(bytes.length);
+                return bytes;
+            } catch (XMLStreamException e) {
+                throw new NodeToFormatException(e);
+            }
+        }
+        var outputStream = xmlElementConverter.createPooledByteArrayOutputStream();
+        try {
+            nodeToFormat(node, outputStream, charset);
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new NodeToFormatException(e);
+        } finally {
+            outputStream.release();
+        }
+    }
+
+    public File nodeToFormatFile(Node node, File file, Charset charset) throws NodeToFormatException, IOException {
+        try (var outputStream = xmlElementConverter.createFileOutputStream(file)) {
+            nodeToFormat(node, outputStream, charset);
+            return file;
+        }
+    }
+
+    /// 批量转换多个相互独立的 Node, 规则同 [#formatToNodeAll(List, Charset)]
+    public List<XmlBatchResult<byte[]>> nodeToFormatAll(List<? extends Node> nodes, Charset charset) {
+        return XmlBatchExecutor.run(nodes.iterator(), batchConcurrency, node -> nodeToFormatBytes(node, charset));
+    }
+
+    /// 创建一个逐条写出记录的 XmlRecordWriter, 详见 [XmlRecordWriter]
+    public XmlRecordWriter openRecordWriter(Writer writer) throws NodeToFormatException {
+        var probe = xmlElementConverter.probe(XmlOperation.NODE_TO_FORMAT);
+        try {
+            var xmlWriter = probe.writer(xmlElementConverter.createXmlWriter(writer));
+            return new XmlRecordWriter(xmlWriter, xmlNodeSerializer, probe);
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    /// 同 [#openRecordWriter(Writer)]
+    public XmlRecordWriter openRecordWriter(OutputStream outputStream, Charset charset) throws NodeToFormatException {
+        var probe = xmlElementConverter.probe(XmlOperation.NODE_TO_FORMAT);
+        try {
+            var xmlWriter = probe.writer(xmlElementConverter.createXmlWriter(probe.output(outputStream), charset));
+            return new XmlRecordWriter(xmlWriter, xmlNodeSerializer, probe);
+        } catch (XMLStreamException e) {
+            probe.close();
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    public CompiledXmlElementConverter xmlElementConverter() {
+        return xmlElementConverter;
+    }
+
+    public ElementNodeConverter elementNodeConverter() {
+        return elementNodeConverter;
+    }
+
+    /// 返回一份配置副本, 修改副本不会影响当前实例
+    public XmlNodeConverterOptions options() {
+        return xmlElementConverter.options();
+    }
+
+}
@@ -2,11 +2,17 @@ package dev.scx.format.xml;
 
 import dev.scx.format.FormatToNodeException;
 import dev.scx.format.NodeToFormatException;
+import dev.scx.format.xml.element.CompactDocument;
 import dev.scx.format.xml.element.Element;
 import dev.scx.format.xml.element.TagElement;
 import dev.scx.format.xml.element.TextElement;
 import dev.scx.node.*;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /// 因为 XML <-> 通用对象 并不是完全语义兼容的,
 /// 比如数组, 根节点, 空值等.
 /// 这里 我们规定一些 转换规则.
@@ -18,11 +24,15 @@ public class ElementNodeConverter {
     private final String rootName;
     private final int maxNestingDepth;
     private final String itemName;
+    private final int parallelThreshold;
+    private final XmlMetricsListener metricsListener;
 
     public ElementNodeConverter(XmlNodeConverterOptions options) {
         this.rootName = options.rootName();
         this.maxNestingDepth = options.maxNestingDepth();
         this.itemName = options.itemName();
+        this.parallelThreshold = options.parallelThreshold();
+        this.metricsListener = options.metricsListener();
     }
 
     /// ### elementToNode 规则:
@@ -59,107 +69,195 @@ public class ElementNodeConverter {
     ///
     /// 11, `<a name="">  <b> 1 2 3 </b>   </a>` -> `{"b": " 1 2 3 ", "name": "" }`
     ///     所有的纯空白文本节点视为不存在, 但有内容则保留原始文本, 属性永远保留原始文本
+    ///
+    /// 配置了 parallelThreshold 时, 子元素数量达到阈值的元素会在 ForkJoinPool.commonPool 中并行转换其子元素,
+    /// 再按文档顺序合并, 结果与顺序转换完全一致.
     public Node elementToNode(Element element) {
-        return _elementToNode(element, 1);
+        try (var probe = XmlProbe.begin(metricsListener, XmlOperation.ELEMENT_TO_NODE)) {
+            var node = parallelThreshold > 0 && element instanceof TagElement tagElement ? _elementToNodeParallel(tagElement, 1, probe) : elementToNode(element, 1, probe);
+            probe.success();
+            return node;
+        }
     }
 
-    private Node _elementToNode(Element element, int currentDepth) {
-        if (currentDepth > maxNestingDepth) {
-            throw new FormatToNodeException("Nesting depth exceeds limit: " + maxNestingDepth);
+    /// 子元素数量未达到阈值时 同 [#elementToNode(Element, int, XmlProbe)]
+    private Node _elementToNodeParallel(TagElement tagElement, int currentDepth, XmlProbe probe) {
+        if (tagElement.size() < parallelThreshold) {
+            return elementToNode(tagElement, currentDepth, probe);
         }
-        if (element instanceof TagElement tagElement) {
-            // 记录出现过的子元素和属性
-            var elements = new ObjectNode();
-
-            // 1, 处理当前元素的属性
-            for (var attribute : tagElement.attributes()) {
-                var name = attribute.name();
-                var value = attribute.value();
-                // 可能存在重名元素
-                var oldChildNode = elements.get(name);
-                if (oldChildNode == null) {
-                    elements.put(name, new StringNode(value));
-                    continue;
-                }
-                //我们默认尝试转换成 数组
-                if (oldChildNode instanceof ArrayNode arrayNode) {
-                    arrayNode.add(new StringNode(value));
-                } else {
-                    var arrayNode = new ArrayNode();
-                    arrayNode.add(oldChildNode);
-                    arrayNode.add(new StringNode(value));
-                    elements.put(name, arrayNode);
-                }
+        checkFormatToNodeDepth(currentDepth);
+        probe.countElement(tagElement.attributeSize(), currentDepth);
+        var children = tagElement.children().toArray(new Element[0]);
+        // 1, 并行转换所有子元素, 结果按下标存放, 每个任务使用自己的计数, 完成后合并
+        var results = new Node[children.length];
+        var leafSize = Math.max(1, children.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        var task = new ConvertTask(children, results, 0, children.length, leafSize, currentDepth + 1, probe.fork());
+        task.invoke();
+        probe.merge(task.probe);
+        // 2, 按文档顺序合并, 与 ElementFrame 中的顺序 (先属性 后子元素) 一致, 同名时合并为数组的顺序也就一致
+        var elements = new ObjectNode();
+        for (int j = 0; j < tagElement.attributeSize(); j++) {
+            var attribute = tagElement.attributeAt(j);
+            putOrAppend(elements, attribute.name(), new StringNode(attribute.value()));
+        }
+        var texts = new ArrayNode();
+        for (int j = 0; j < children.length; j++) {
+            if (children[j] instanceof TagElement tag) {
+                putOrAppend(elements, tag.tagName(), results[j]);
+            } else if (children[j] instanceof TextElement textElement) {
+                texts.add(new StringNode(textElement.text()));
+                probe.countText();
             }
+        }
+        return mergeTexts(elements, texts);
+    }
 
-            // 2, 判断是否是自闭合标签
-            var emptyElement = tagElement.isEmpty() && tagElement.useSelfClosing();
+    /// 规则同 [#elementToNode(Element)], 但只在访问时才转换, 适合只读取少数 key 的场景
+    public ElementNodeView elementToNodeView(TagElement element) {
+        checkFormatToNodeDepth(1);
+        return new ElementNodeView(this, element, 1);
+    }
+
+    /// 非递归实现, 嵌套深度只受 maxNestingDepth 限制, 不受线程栈大小限制. 统计信息在转换的同时计入 probe
+    Node elementToNode(Element element, int currentDepth, XmlProbe probe) {
+        checkFormatToNodeDepth(currentDepth);
+        if (element instanceof TextElement textElement) {
+            var text = textElement.text();
+            probe.countText();
+            return new StringNode(text);
+        }
+        if (!(element instanceof TagElement tagElement)) {
+            throw new FormatToNodeException("Invalid element type");
+        }
+
+        probe.countElement(tagElement.attributeSize(), currentDepth);
+        var curr = new ElementFrame(null, tagElement, currentDepth);
+
+        outer_loop:
+        while (true) {
+            Node result;
             // 自闭合标签 无需处理内部元素 直接返回
-            if (emptyElement) {
-                if (elements.isEmpty()) {
-                    return NullNode.NULL;
-                } else {
-                    return elements;
+            if (curr.emptyElement) {
+                result = curr.elements.isEmpty() ? NullNode.NULL : curr.elements;
+            } else {
+                while (curr.iterator.hasNext()) {
+                    var e = curr.iterator.next();
+                    if (e instanceof TagElement tag) {
+                        checkFormatToNodeDepth(curr.depth + 1);
+                        probe.countElement(tag.attributeSize(), curr.depth + 1);
+                        curr = new ElementFrame(curr, tag, curr.depth + 1);
+                        continue outer_loop;
+                    } else if (e instanceof TextElement textElement) {
+                        // 遇到了文本 进行存储
+                        var text = textElement.text();
+                        curr.texts.add(new StringNode(text));
+                        probe.countText();
+                    }
                 }
+                result = mergeTexts(curr.elements, curr.texts);
+            }
+
+            var parent = curr.parent;
+            if (parent == null) {
+                return result;
+            }
+            putOrAppend(parent.elements, curr.tagElement.tagName(), result);
+            curr = parent;
+        }
+    }
+
+    static Node mergeTexts(ObjectNode elements, ArrayNode texts) {
+        // 没有任何子元素
+        if (elements.isEmpty()) {
+            // 如果文本也是空的
+            if (texts.isEmpty()) {
+                return new StringNode("");
             }
+            // 如果只有一个文本节点
+            if (texts.size() == 1) {
+                return texts.get(0);
+            }
+            // 有很多文本节点 (应该不会出现这种情况)
+            return texts;
+        }
+        // 如果只有一个文本节点
+        if (texts.size() == 1) {
+            elements.put("", texts.get(0));
+            return elements;
+        } else if (texts.size() > 1) {
+            // 如果又很多文本节点 以数组形式添加
+            elements.put("", texts);
+        }
+        return elements;
+    }
+
+    void checkFormatToNodeDepth(int currentDepth) {
+        if (currentDepth > maxNestingDepth) {
+            throw new FormatToNodeException("Nesting depth exceeds limit: " + maxNestingDepth);
+        }
+    }
 
-            // 记录出现过的文本
-            var texts = new ArrayNode();
+    /// 规则同 [#elementToNode(Element)], 直接读取 CompactDocument, 不生成中间的 TagElement 树.
+    /// 统计信息记为 [XmlOperation#ELEMENT_TO_NODE]
+    public Node compactDocumentToNode(CompactDocument document) {
+        try (var probe = XmlProbe.begin(metricsListener, XmlOperation.ELEMENT_TO_NODE)) {
+            var node = _compactDocumentToNode(document, probe);
+            probe.success();
+            return node;
+        }
+    }
 
-            for (var e : tagElement) {
-                if (e instanceof TagElement tag) {
-                    var name = tag.tagName();
-                    var ele = _elementToNode(tag, currentDepth + 1);
-                    // 可能存在重名元素
-                    var oldChildNode = elements.get(name);
-                    if (oldChildNode == null) {
-                        elements.put(name, ele);
-                        continue;
-                    }
-                    //我们默认尝试转换成 数组
-                    if (oldChildNode instanceof ArrayNode arrayNode) {
-                        arrayNode.add(ele);
-                    } else {
-                        var arrayNode = new ArrayNode();
-                        arrayNode.add(oldChildNode);
-                        arrayNode.add(ele);
-                        elements.put(name, arrayNode);
+    private Node _compactDocumentToNode(CompactDocument document, XmlProbe probe) {
+        checkFormatToNodeDepth(1);
+        probe.countElement(document.attributeSize(document.root()), 1);
+        var curr = new CompactFrame(null, document, document.root(), 1);
+
+        outer_loop:
+        while (true) {
+            Node result;
+            // 自闭合标签 无需处理内部元素 直接返回
+            if (curr.emptyElement) {
+                result = curr.elements.isEmpty() ? NullNode.NULL : curr.elements;
+            } else {
+                while (curr.cursor != CompactDocument.NONE) {
+                    var child = curr.cursor;
+                    curr.cursor = document.nextSibling(child);
+                    if (document.isTag(child)) {
+                        checkFormatToNodeDepth(curr.depth + 1);
+                        probe.countElement(document.attributeSize(child), curr.depth + 1);
+                        curr = new CompactFrame(curr, document, child, curr.depth + 1);
+                        continue outer_loop;
                     }
-                } else if (e instanceof TextElement textElement) {
                     // 遇到了文本 进行存储
-                    var text = textElement.text();
-                    texts.add(new StringNode(text));
+                    curr.texts.add(new StringNode(document.text(child)));
+                    probe.countText();
                 }
+                result = mergeTexts(curr.elements, curr.texts);
             }
 
-            // 没有任何子元素
-            if (elements.isEmpty()) {
-                // 如果文本也是空的
-                if (texts.isEmpty()) {
-                    return new StringNode("");
-                }
-                // 如果只有一个文本节点
-                if (texts.size() == 1) {
-                    return texts.get(0);
-                }
-                // 有很多文本节点 (应该不会出现这种情况)
-                return texts;
-            }
-            // 如果只有一个文本节点
-            if (texts.size() == 1) {
-                elements.put("", texts.get(0));
-                return elements;
-            } else if (texts.size() > 1) {
-                // 如果又很多文本节点 以数组形式添加
-                elements.put("", texts);
+            var parent = curr.parent;
+            if (parent == null) {
+                return result;
             }
+            putOrAppend(parent.elements, document.tagName(curr.node), result);
+            curr = parent;
+        }
+    }
 
-            return elements;
-        } else if (element instanceof TextElement textElement) {
-            var text = textElement.text();
-            return new StringNode(text);
+    /// 可能存在重名元素 (或属性), 我们默认尝试转换成 数组
+    static void putOrAppend(ObjectNode elements, String name, Node value) {
+        var oldChildNode = elements.get(name);
+        if (oldChildNode == null) {
+            elements.put(name, value);
+            return;
+        }
+        if (oldChildNode instanceof ArrayNode arrayNode) {
+            arrayNode.add(value);
         } else {
-            throw new FormatToNodeException("Invalid element type");
+            var arrayNode = new ArrayNode();
+            arrayNode.add(oldChildNode);
+            arrayNode.add(value);
+            elements.put(name, arrayNode);
         }
     }
 
@@ -189,53 +287,220 @@ public class ElementNodeConverter {
     /// 7, `{"": 123}` -> `<root>123</root>`
     ///    key 为 "", 直接解包
     public Element nodeToElement(Node node) {
-        // 顶级数组需要特殊处理
-        var isRootArray = node instanceof ArrayNode;
-        return _nodeToElement(node, rootName, isRootArray, 1);
+        try (var probe = XmlProbe.begin(metricsListener, XmlOperation.NODE_TO_ELEMENT)) {
+            // 顶级数组需要特殊处理
+            var isRootArray = node instanceof ArrayNode;
+            var element = _nodeToElement(node, rootName, isRootArray, 1, probe);
+            probe.success();
+            return element;
+        }
+    }
+
+    /// 非递归实现, 嵌套深度只受 maxNestingDepth 限制, 不受线程栈大小限制
+    private Element _nodeToElement(Node node, String key, boolean inArray, int currentDepth, XmlProbe probe) {
+        var root = _createElement(node, key, currentDepth, probe);
+        var curr = _createFrame(null, node, root, key, inArray, currentDepth);
+
+        while (curr != null) {
+            if (!curr.hasNext()) {
+                curr = curr.parent;
+                continue;
+            }
+            // 对象使用 entry 的 key, 数组使用上文 key 或 itemName
+            String childKey;
+            Node childNode;
+            boolean childInArray;
+            if (curr.objectIterator != null) {
+                var e = curr.objectIterator.next();
+                childKey = e.getKey();
+                childNode = e.getValue();
+                childInArray = false;
+            } else {
+                childKey = curr.itemKey;
+                childNode = curr.arrayIterator.next();
+                childInArray = true;
+            }
+            var childDepth = curr.depth + 1;
+            var childElement = _createElement(childNode, childKey, childDepth, probe);
+            curr.tagElement.add(childElement);
+            var childFrame = _createFrame(curr, childNode, childElement, childKey, childInArray, childDepth);
+            if (childFrame != null) {
+                curr = childFrame;
+            }
+        }
+
+        return root;
     }
 
-    private Element _nodeToElement(Node node, String key, boolean inArray, int currentDepth) {
+    /// 创建 node 对应的 Element, 对象和数组只创建外层标签, 内部元素由调用方继续填充
+    private Element _createElement(Node node, String key, int currentDepth, XmlProbe probe) {
         if (currentDepth > maxNestingDepth) {
             throw new NodeToFormatException("Nesting depth exceeds limit: " + maxNestingDepth);
         }
         switch (node) {
             case NullNode _ -> {
                 // 如果根节点本身就是 null, 直接返回自闭合标签
+                probe.countElement(0, currentDepth);
                 return new TagElement(key, true);
             }
             case ValueNode valueNode -> {
                 // "", 直接解包
                 if (key.isEmpty()) {
+                    probe.countText();
                     return new TextElement(valueNode.asString());
                 } else {
+                    probe.countElement(0, currentDepth);
+                    probe.countText();
                     var el = new TagElement(key, false);
                     el.add(new TextElement(valueNode.asString()));
                     return el;
                 }
             }
-            case ObjectNode objectNode -> {
-                var el = new TagElement(key, false);
-                for (var e : objectNode) {
-                    el.add(_nodeToElement(e.getValue(), e.getKey(), false, currentDepth + 1));
-                }
-                return el;
+            case ObjectNode _, ArrayNode _ -> {
+                probe.countElement(0, currentDepth);
+                return new TagElement(key, false);
             }
-            case ArrayNode arrayNode -> {
-                if (inArray) {
-                    var el = new TagElement(key, false);
-                    for (var e : arrayNode) {
-                        el.add(_nodeToElement(e, itemName, true, currentDepth + 1));
-                    }
-                    return el;
-                } else {
-                    var el = new TagElement(key, false);
-                    for (var e : arrayNode) {
-                        el.add(_nodeToElement(e, key, true, currentDepth + 1));
+        }
+    }
+
+    /// 对象和数组需要继续处理内部元素, 其余类型返回 null
+    private NodeFrame _createFrame(NodeFrame parent, Node node, Element element, String key, boolean inArray, int currentDepth) {
+        return switch (node) {
+            case ObjectNode objectNode -> new NodeFrame(parent, (TagElement) element, objectNode.iterator(), null, null, currentDepth);
+            // 数组没有可用的上文 key 时 使用 itemName
+            case ArrayNode arrayNode -> new NodeFrame(parent, (TagElement) element, null, arrayNode.iterator(), inArray ? itemName : key, currentDepth);
+            default -> null;
+        };
+    }
+
+    /// 并行转换 children 中 [from, to) 范围内的 TagElement, 范围足够小时在当前线程中顺序转换
+    private final class ConvertTask extends RecursiveAction {
+
+        private final Element[] children;
+        private final Node[] results;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final int depth;
+        // 只由执行当前任务的线程计数, 完成后由父任务合并
+        private final XmlProbe probe;
+
+        private ConvertTask(Element[] children, Node[] results, int from, int to, int leafSize, int depth, XmlProbe probe) {
+            this.children = children;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.depth = depth;
+            this.probe = probe;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                for (int i = from; i < to; i++) {
+                    if (children[i] instanceof TagElement tag) {
+                        // 子元素本身也可能很宽
+                        results[i] = _elementToNodeParallel(tag, depth, probe);
                     }
-                    return el;
                 }
+                return;
+            }
+            var middle = (from + to) >>> 1;
+            var left = new ConvertTask(children, results, from, middle, leafSize, depth, probe.fork());
+            var right = new ConvertTask(children, results, middle, to, leafSize, depth, probe.fork());
+            invokeAll(left, right);
+            probe.merge(left.probe);
+            probe.merge(right.probe);
+        }
+
+    }
+
+    /// elementToNode 中一个尚未处理完的 TagElement
+    private static final class ElementFrame {
+
+        private final ElementFrame parent;
+        private final TagElement tagElement;
+        private final int depth;
+        private final boolean emptyElement;
+        // 记录出现过的子元素和属性
+        private final ObjectNode elements;
+        // 记录出现过的文本
+        private final ArrayNode texts;
+        private final Iterator<Element> iterator;
+
+        private ElementFrame(ElementFrame parent, TagElement tagElement, int depth) {
+            this.parent = parent;
+            this.tagElement = tagElement;
+            this.depth = depth;
+            this.elements = new ObjectNode();
+            // 1, 处理当前元素的属性
+            for (int i = 0; i < tagElement.attributeSize(); i++) {
+                var attribute = tagElement.attributeAt(i);
+                putOrAppend(elements, attribute.name(), new StringNode(attribute.value()));
+            }
+            // 2, 判断是否是自闭合标签
+            this.emptyElement = tagElement.isEmpty() && tagElement.useSelfClosing();
+            this.texts = emptyElement ? null : new ArrayNode();
+            this.iterator = emptyElement ? null : tagElement.iterator();
+        }
+
+    }
+
+    /// compactDocumentToNode 中一个尚未处理完的标签
+    private static final class CompactFrame {
+
+        private final CompactFrame parent;
+        private final int node;
+        private final int depth;
+        private final boolean emptyElement;
+        // 记录出现过的子元素和属性
+        private final ObjectNode elements;
+        // 记录出现过的文本
+        private final ArrayNode texts;
+        // 下一个需要处理的子节点
+        private int cursor;
+
+        private CompactFrame(CompactFrame parent, CompactDocument document, int node, int depth) {
+            this.parent = parent;
+            this.node = node;
+            this.depth = depth;
+            this.elements = new ObjectNode();
+            // 1, 处理当前元素的属性
+            for (int i = 0; i < document.attributeSize(node); i++) {
+                putOrAppend(elements, document.attributeName(node, i), new StringNode(document.attributeValue(node, i)));
             }
+            // 2, 判断是否是自闭合标签
+            this.emptyElement = document.isEmpty(node) && document.useSelfClosing(node);
+            this.texts = emptyElement ? null : new ArrayNode();
+            this.cursor = document.firstChild(node);
+        }
+
+    }
+
+    /// nodeToElement 中一个尚未处理完的 ObjectNode 或 ArrayNode
+    private static final class NodeFrame {
+
+        private final NodeFrame parent;
+        private final TagElement tagElement;
+        private final Iterator<Map.Entry<String, Node>> objectIterator;
+        private final Iterator<Node> arrayIterator;
+        private final String itemKey;
+        private final int depth;
+
+        private NodeFrame(NodeFrame parent, TagElement tagElement, Iterator<Map.Entry<String, Node>> objectIterator, Iterator<Node> arrayIterator, String itemKey, int depth) {
+            this.parent = parent;
+            this.tagElement = tagElement;
+            this.objectIterator = objectIterator;
+            this.arrayIterator = arrayIterator;
+            this.itemKey = itemKey;
+            this.depth = depth;
         }
+
+        private boolean hasNext() {
+            return objectIterator != null ? objectIterator.hasNext() : arrayIterator.hasNext();
+        }
+
     }
 
 }
@@ -0,0 +1,203 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.xml.element.Attribute;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.format.xml.element.TextElement;
+import dev.scx.node.*;
+
+import java.util.*;
+
+import static dev.scx.format.xml.ElementNodeConverter.mergeTexts;
+import static dev.scx.format.xml.ElementNodeConverter.putOrAppend;
+
+/// TagElement 的惰性 Node 视图.
+///
+/// 规则与 [ElementNodeConverter#elementToNode(dev.scx.format.xml.element.Element)] 完全一致, 但只在访问时才转换:
+/// 第一次访问时只对当前元素的属性和子元素按名称分组 (不转换), [#get(String)] 只转换对应 key 的子树,
+/// [#view(String)] 则继续返回子元素的惰性视图. 所有转换结果都会被缓存, 请勿修改返回的 Node.
+///
+/// 因为 Node 是 sealed 类型, 视图本身不是 Node, 需要完整的 Node 时使用 [#toNode()] (会复用已经转换过的 key).
+///
+/// 非线程安全.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class ElementNodeView {
+
+    private final ElementNodeConverter converter;
+    private final TagElement element;
+    private final int depth;
+    // 属性和子元素按名称分组, 值为 Attribute 或 TagElement, 顺序同 elementToNode (属性在前). 第一次访问时创建
+    private LinkedHashMap<String, List<Object>> entries;
+    // 记录出现过的文本
+    private ArrayNode texts;
+    // 已经转换过的 key
+    private HashMap<String, Node> values;
+    private HashMap<String, List<ElementNodeView>> views;
+    private Node node;
+
+    ElementNodeView(ElementNodeConverter converter, TagElement element, int depth) {
+        this.converter = converter;
+        this.element = element;
+        this.depth = depth;
+        this.entries = null;
+        this.texts = null;
+        this.values = null;
+        this.views = null;
+        this.node = null;
+    }
+
+    public TagElement element() {
+        return element;
+    }
+
+    /// 转换结果是否为 ObjectNode (存在属性或子元素)
+    public boolean isObject() {
+        _group();
+        return !entries.isEmpty();
+    }
+
+    /// 转换结果中的所有 key, 顺序同 elementToNode. 转换结果不是 ObjectNode 时为空
+    public Set<String> keys() {
+        _group();
+        if (entries.isEmpty()) {
+            return Set.of();
+        }
+        if (texts.isEmpty()) {
+            return Collections.unmodifiableSet(entries.keySet());
+        }
+        // 同时存在子元素和文本, 文本以 "" 为 key
+        var keys = new LinkedHashSet<>(entries.keySet());
+        keys.add("");
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /// 同 `elementToNode(element).get(key)`, 只转换 key 对应的子树. 转换结果不是 ObjectNode 或 key 不存在时返回 null
+    public Node get(String key) {
+        _group();
+        if (entries.isEmpty()) {
+            return null;
+        }
+        var value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = key.isEmpty() ? _texts() : _convert(key);
+        if (value != null) {
+            values.put(key, value);
+        }
+        return value;
+    }
+
+    /// key 只对应一个子元素时 返回它的惰性视图, 否则返回 null (此时请使用 [#get(String)] 或 [#views(String)])
+    public ElementNodeView view(String key) {
+        _group();
+        var list = entries.get(key);
+        if (list == null || list.size() != 1) {
+            return null;
+        }
+        var views = views(key);
+        return views.isEmpty() ? null : views.get(0);
+    }
+
+    /// key 对应的所有子元素 (不包括同名属性) 的惰性视图
+    public List<ElementNodeView> views(String key) {
+        _group();
+        var result = views.get(key);
+        if (result != null) {
+            return result;
+        }
+        var list = entries.get(key);
+        if (list == null) {
+            return List.of();
+        }
+        var childViews = new ArrayList<ElementNodeView>(list.size());
+        for (var entry : list) {
+            if (entry instanceof TagElement tag) {
+                converter.checkFormatToNodeDepth(depth + 1);
+                childViews.add(new ElementNodeView(converter, tag, depth + 1));
+            }
+        }
+        result = Collections.unmodifiableList(childViews);
+        views.put(key, result);
+        return result;
+    }
+
+    /// 完整的转换结果, 同 `elementToNode(element)`
+    public Node toNode() {
+        if (node != null) {
+            return node;
+        }
+        _group();
+        if (entries.isEmpty()) {
+            // 自闭合标签 没有内部元素
+            node = _isEmptyElement() ? NullNode.NULL : mergeTexts(new ObjectNode(), texts);
+        } else {
+            var object = new ObjectNode();
+            for (var key : keys()) {
+                object.put(key, get(key));
+            }
+            node = object;
+        }
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return toNode().toString();
+    }
+
+    private boolean _isEmptyElement() {
+        return element.isEmpty() && element.useSelfClosing();
+    }
+
+    /// 只分组, 不转换
+    private void _group() {
+        if (entries != null) {
+            return;
+        }
+        var entries = new LinkedHashMap<String, List<Object>>();
+        var texts = new ArrayNode();
+        // 1, 处理当前元素的属性
+        for (int i = 0; i < element.attributeSize(); i++) {
+            var attribute = element.attributeAt(i);
+            entries.computeIfAbsent(attribute.name(), k -> new ArrayList<>(1)).add(attribute);
+        }
+        // 2, 自闭合标签 无需处理内部元素
+        if (!_isEmptyElement()) {
+            for (var child : element) {
+                if (child instanceof TagElement tag) {
+                    entries.computeIfAbsent(tag.tagName(), k -> new ArrayList<>(1)).add(tag);
+                } else if (child instanceof TextElement textElement) {
+                    texts.add(new StringNode(textElement.text()));
+                }
+            }
+        }
+        this.entries = entries;
+        this.texts = texts;
+        this.values = new HashMap<>();
+        this.views = new HashMap<>();
+    }
+
+    private Node _convert(String key) {
+        var list = entries.get(key);
+        if (list == null) {
+            return null;
+        }
+        // 和 elementToNode 一样按顺序合并, 同名时合并为数组
+        var elements = new ObjectNode();
+        for (var entry : list) {
+            var value = entry instanceof Attribute attribute ? new StringNode(attribute.value()) : converter.elementToNode((TagElement) entry, depth + 1, XmlProbe.NOOP);
+            putOrAppend(elements, key, value);
+        }
+        return elements.get(key);
+    }
+
+    private Node _texts() {
+        if (texts.isEmpty()) {
+            return null;
+        }
+        return texts.size() == 1 ? texts.get(0) : texts;
+    }
+
+}
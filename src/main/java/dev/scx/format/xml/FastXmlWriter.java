@@ -0,0 +1,349 @@
+package dev.scx.format.xml;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/// 直接写出 UTF-8 字节的 XmlWriter.
+///
+/// 只支持 XmlWriter 中的几种操作, 所以无需 XMLStreamWriter 的名称校验和命名空间处理.
+/// 转义规则与 Woodstox 的默认配置完全一致 (输出逐字节相同):
+///
+/// - 文本: `<` `&` 转义, `>` 只在文本开头或紧跟 `]` 时转义, `\r` 写为 `&#xd;`
+/// - 属性: `<` `&` `"` 转义, `\t` `\n` `\r` 写为 `&#x9;` `&#xa;` `&#xd;`
+/// - 其余小于 0x20 的控制字符 和 不成对的代理字符 均为非法字符
+///
+/// out 为 null 时全部内容保存在可增长的 byte[] 中, 通过 [#toByteArray()] 获取.
+///
+/// 非线程安全.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class FastXmlWriter implements XmlWriter {
+
+    // 文本 (TEXT) 和 属性 (ATTR) 中需要特殊处理的 ASCII 字符
+    private static final byte[] TEXT_ESCAPES = new byte[128];
+    private static final byte[] ATTR_ESCAPES = new byte[128];
+    private static final byte NONE = 0;
+    private static final byte ESCAPE = 1;
+    private static final byte INVALID = 2;
+    // 只在特定位置需要转义的 '>'
+    private static final byte GT = 3;
+
+    private static final byte[] LT_ENTITY = "&lt;".getBytes(UTF_8);
+    private static final byte[] GT_ENTITY = "&gt;".getBytes(UTF_8);
+    private static final byte[] AMP_ENTITY = "&amp;".getBytes(UTF_8);
+    private static final byte[] QUOT_ENTITY = "&quot;".getBytes(UTF_8);
+    private static final byte[] TAB_ENTITY = "&#x9;".getBytes(UTF_8);
+    private static final byte[] LF_ENTITY = "&#xa;".getBytes(UTF_8);
+    private static final byte[] CR_ENTITY = "&#xd;".getBytes(UTF_8);
+
+    // 名称表只缓存这么多条, 防止不断变化的名称 (比如 ObjectNode 的 key 来自用户数据) 无限增长
+    private static final int MAX_NAME_CACHE_SIZE = 4096;
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            TEXT_ESCAPES[c] = INVALID;
+            ATTR_ESCAPES[c] = INVALID;
+        }
+        TEXT_ESCAPES['\t'] = NONE;
+        TEXT_ESCAPES['\n'] = NONE;
+        TEXT_ESCAPES['\r'] = ESCAPE;
+        TEXT_ESCAPES['<'] = ESCAPE;
+        TEXT_ESCAPES['&'] = ESCAPE;
+        TEXT_ESCAPES['>'] = GT;
+        ATTR_ESCAPES['\t'] = ESCAPE;
+        ATTR_ESCAPES['\n'] = ESCAPE;
+        ATTR_ESCAPES['\r'] = ESCAPE;
+        ATTR_ESCAPES['<'] = ESCAPE;
+        ATTR_ESCAPES['&'] = ESCAPE;
+        ATTR_ESCAPES['"'] = ESCAPE;
+    }
+
+    private final OutputStream out;
+    // 名称 -> UTF-8 字节, 由同一个 CompiledXmlElementConverter 创建的所有 writer 共享
+    private final Map<String, byte[]> nameCache;
+    private final XmlBufferPool bufferPool;
+    private byte[] buffer;
+    private int position;
+    // 尚未结束的元素名称
+    private byte[][] openNames;
+    private int depth;
+    // 开始标签是否还没有写出 '>'
+    private boolean startTagOpen;
+    private boolean emptyElement;
+    private boolean closed;
+    // 缓冲区是否已经归还到池中
+    private boolean released;
+
+    public FastXmlWriter(OutputStream out, Map<String, byte[]> nameCache, XmlBufferPool bufferPool) {
+        this.out = out;
+        this.nameCache = nameCache;
+        this.bufferPool = bufferPool;
+        this.buffer = bufferPool.acquireArray();
+        this.position = 0;
+        this.openNames = new byte[16][];
+        this.depth = 0;
+        this.startTagOpen = false;
+        this.emptyElement = false;
+        this.closed = false;
+        this.released = false;
+    }
+
+    @Override
+    public void writeStartElement(String name) throws XMLStreamException {
+        _closeStartTag();
+        var nameBytes = _nameBytes(name);
+        _writeByte('<');
+        _writeBytes(nameBytes);
+        if (depth == openNames.length) {
+            openNames = Arrays.copyOf(openNames, depth * 2);
+        }
+        openNames[depth] = nameBytes;
+        depth++;
+        startTagOpen = true;
+        emptyElement = false;
+    }
+
+    @Override
+    public void writeEmptyElement(String name) throws XMLStreamException {
+        _closeStartTag();
+        _writeByte('<');
+        _writeBytes(_nameBytes(name));
+        startTagOpen = true;
+        emptyElement = true;
+    }
+
+    @Override
+    public void writeAttribute(String name, String value) throws XMLStreamException {
+        if (!startTagOpen) {
+            throw new XMLStreamException("Trying to write an attribute when there is no open start element");
+        }
+        _writeByte(' ');
+        _writeBytes(_nameBytes(name));
+        _writeByte('=');
+        _writeByte('"');
+        _writeEscaped(value, ATTR_ESCAPES);
+        _writeByte('"');
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        // 和 Woodstox 一样, 即使是空字符串也会结束开始标签
+        _closeStartTag();
+        _writeEscaped(text, TEXT_ESCAPES);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        _closeStartTag();
+        if (depth == 0) {
+            throw new XMLStreamException("No open start element, when trying to write end element");
+        }
+        depth--;
+        var nameBytes = openNames[depth];
+        openNames[depth] = null;
+        _writeByte('<');
+        _writeByte('/');
+        _writeBytes(nameBytes);
+        _writeByte('>');
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        if (out == null) {
+            return;
+        }
+        try {
+            _flushBuffer();
+            out.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    /// 补全所有未结束的元素, 并关闭底层输出
+    @Override
+    public void close() throws XMLStreamException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        while (depth > 0) {
+            writeEndElement();
+        }
+        _closeStartTag();
+        // 写入 byte[] 时 内容还需要由 toByteArray 读取, 到时再归还缓冲区
+        if (out == null) {
+            return;
+        }
+        try (out) {
+            _flushBuffer();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        } finally {
+            _releaseBuffer();
+        }
+    }
+
+    /// out 为 null 时使用, 返回已经写出的全部内容. 在 close 之后调用时会同时归还缓冲区
+    public byte[] toByteArray() {
+        var bytes = Arrays.copyOf(buffer, position);
+        if (closed) {
+            _releaseBuffer();
+            // 之后不会再写入, 再次调用时依然可以返回相同的内容
+            buffer = bytes;
+        }
+        return bytes;
+    }
+
+    private void _releaseBuffer() {
+        if (released) {
+            return;
+        }
+        released = true;
+        bufferPool.releaseArray(buffer);
+    }
+
+    private byte[] _nameBytes(String name) {
+        var bytes = nameCache.get(name);
+        if (bytes == null) {
+            bytes = name.getBytes(UTF_8);
+            if (nameCache.size() < MAX_NAME_CACHE_SIZE) {
+                nameCache.put(name, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    private void _closeStartTag() throws XMLStreamException {
+        if (!startTagOpen) {
+            return;
+        }
+        startTagOpen = false;
+        if (emptyElement) {
+            emptyElement = false;
+            _writeByte('/');
+        }
+        _writeByte('>');
+    }
+
+    private void _writeEscaped(String text, byte[] escapes) throws XMLStreamException {
+        // 快速路径: 开头纯 ASCII 且无需转义的部分 (比如整段 base64) 直接整段复制, 剩余部分从该处继续逐字符转义
+        var clean = XmlChars.cleanAsciiLength(text, escapes);
+        _writeAscii(text, clean);
+        var length = text.length();
+        for (int i = clean; i < length; i++) {
+            var c = text.charAt(i);
+            if (c < 0x80) {
+                var escape = escapes[c];
+                if (escape == NONE) {
+                    _writeByte(c);
+                } else if (escape == GT) {
+                    // 只在可能构成 "]]>" 时转义, 和 Woodstox 一样保守处理
+                    if (i == 0 || text.charAt(i - 1) == ']') {
+                        _writeBytes(GT_ENTITY);
+                    } else {
+                        _writeByte(c);
+                    }
+                } else if (escape == ESCAPE) {
+                    _writeBytes(_entity(c));
+                } else {
+                    throw new XMLStreamException("Invalid white space character (0x" + Integer.toHexString(c) + ") in text to output");
+                }
+            } else if (c < 0x800) {
+                _ensureCapacity(2);
+                buffer[position] = (byte) (0xC0 | (c >> 6));
+                buffer[position + 1] = (byte) (0x80 | (c & 0x3F));
+                position = position + 2;
+            } else if (Character.isSurrogate(c)) {
+                // 必须是成对的代理字符
+                if (!Character.isHighSurrogate(c) || i + 1 >= length || !Character.isLowSurrogate(text.charAt(i + 1))) {
+                    throw new XMLStreamException("Unmatched surrogate character (0x" + Integer.toHexString(c) + ") in text to output");
+                }
+                var codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                i++;
+                _ensureCapacity(4);
+                buffer[position] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position + 1] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position + 2] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position + 3] = (byte) (0x80 | (codePoint & 0x3F));
+                position = position + 4;
+            } else {
+                _ensureCapacity(3);
+                buffer[position] = (byte) (0xE0 | (c >> 12));
+                buffer[position + 1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position + 2] = (byte) (0x80 | (c & 0x3F));
+                position = position + 3;
+            }
+        }
+    }
+
+    /// 写入 text 的 [0, length) 部分, 调用方需保证这部分全部为 ASCII
+    @SuppressWarnings("deprecation")
+    private void _writeAscii(String text, int length) throws XMLStreamException {
+        var offset = 0;
+        while (offset < length) {
+            if (position == buffer.length) {
+                _ensureCapacity(1);
+            }
+            var n = Math.min(length - offset, buffer.length - position);
+            // 对于 ASCII 这个方法 (取每个 char 的低 8 位) 与 UTF-8 编码结果相同, 并且不会分配新的数组
+            text.getBytes(offset, offset + n, buffer, position);
+            offset = offset + n;
+            position = position + n;
+        }
+    }
+
+    private static byte[] _entity(char c) {
+        return switch (c) {
+            case '<' -> LT_ENTITY;
+            case '&' -> AMP_ENTITY;
+            case '"' -> QUOT_ENTITY;
+            case '\t' -> TAB_ENTITY;
+            case '\n' -> LF_ENTITY;
+            case '\r' -> CR_ENTITY;
+            default -> throw new IllegalArgumentException("No entity for: " + (int) c);
+        };
+    }
+
+    private void _writeByte(int b) throws XMLStreamException {
+        _ensureCapacity(1);
+        buffer[position] = (byte) b;
+        position++;
+    }
+
+    private void _writeBytes(byte[] bytes) throws XMLStreamException {
+        _ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position = position + bytes.length;
+    }
+
+    private void _ensureCapacity(int n) throws XMLStreamException {
+        if (position + n <= buffer.length) {
+            return;
+        }
+        // 写入 byte[] 时扩容, 写入 OutputStream 时先刷新
+        if (out == null || n > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + n));
+            return;
+        }
+        try {
+            _flushBuffer();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void _flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
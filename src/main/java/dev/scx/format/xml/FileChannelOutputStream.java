@@ -0,0 +1,89 @@
+package dev.scx.format.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/// 通过 FileChannel 和一个较大的直接内存缓冲区写出文件的 OutputStream.
+///
+/// 缓冲区写满后才会写入 FileChannel, 直接内存缓冲区可以避免 JDK 内部再复制一次到临时的直接内存.
+/// 缓冲区从 XmlBufferPool 借出, 关闭时归还.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class FileChannelOutputStream extends OutputStream {
+
+    private final FileChannel channel;
+    private final XmlBufferPool bufferPool;
+    private final ByteBuffer buffer;
+    private boolean closed;
+
+    public FileChannelOutputStream(File file, int bufferSize, XmlBufferPool bufferPool) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), WRITE, CREATE, TRUNCATE_EXISTING);
+        this.bufferPool = bufferPool;
+        this.buffer = bufferPool.acquireDirect(bufferSize);
+        this.closed = false;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        _ensureOpen();
+        if (!buffer.hasRemaining()) {
+            _flushBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        _ensureOpen();
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                _flushBuffer();
+            }
+            var n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off = off + n;
+            len = len - n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _ensureOpen();
+        _flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (channel) {
+            _flushBuffer();
+        } finally {
+            bufferPool.releaseDirect(buffer);
+        }
+    }
+
+    /// 关闭后缓冲区已经归还, 不允许再写入
+    private void _ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void _flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,90 @@
+package dev.scx.format.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/// 通过 MappedByteBuffer 窗口读取文件的 InputStream.
+///
+/// 每次只映射 windowSize 大小的一段, 读完后再映射下一段, 所以可以读取任意大小 (包括超过 2GB) 的文件.
+/// 读取时直接从页缓存复制, 没有每次填充缓冲区时的 read 系统调用.
+///
+/// 注意: MappedByteBuffer 无法主动解除映射, 只能等待 GC 回收.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class MappedFileInputStream extends InputStream {
+
+    private final FileChannel channel;
+    // 读取的结束位置 (不包括)
+    private final long end;
+    private final int windowSize;
+    // 下一个窗口在文件中的起始位置
+    private long nextPosition;
+    private MappedByteBuffer window;
+
+    public MappedFileInputStream(File file, int windowSize) throws IOException {
+        this(file, 0, Long.MAX_VALUE, windowSize);
+    }
+
+    /// 只读取文件中 position 开始的 length 个字节
+    public MappedFileInputStream(File file, long position, long length, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), READ);
+        this.end = Math.min(channel.size(), position + Math.min(length, Long.MAX_VALUE - position));
+        this.windowSize = windowSize;
+        this.nextPosition = position;
+        this.window = null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!_ensureWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!_ensureWindow()) {
+            return -1;
+        }
+        var n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return window != null ? window.remaining() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /// 当前窗口读完时映射下一个窗口, 文件读完时返回 false
+    private boolean _ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (nextPosition >= end) {
+            return false;
+        }
+        var length = Math.min(windowSize, end - nextPosition);
+        window = channel.map(READ_ONLY, nextPosition, length);
+        nextPosition = nextPosition + length;
+        return true;
+    }
+
+}
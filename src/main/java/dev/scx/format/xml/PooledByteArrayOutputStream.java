@@ -0,0 +1,89 @@
+package dev.scx.format.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/// 写出到 byte[] 的 OutputStream, 用于替代 ByteArrayOutputStream.
+///
+/// 初始缓冲区从 XmlBufferPool 借出, 大多数文档无需任何扩容, 最后只有 [#toByteArray()] 的一次复制.
+/// 超出时扩容为普通的 byte[], 借出的缓冲区在扩容时就已经归还.
+///
+/// Woodstox 关闭 writer 时会一并关闭这里, 所以 close 之后依然可以调用 toByteArray, 缓冲区由 [#release()] 归还.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class PooledByteArrayOutputStream extends OutputStream {
+
+    private final XmlBufferPool bufferPool;
+    private byte[] buffer;
+    private int count;
+    private boolean closed;
+    // 缓冲区是否还是从池中借出的那个
+    private boolean pooled;
+
+    public PooledByteArrayOutputStream(XmlBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        this.buffer = bufferPool.acquireArray();
+        this.count = 0;
+        this.closed = false;
+        this.pooled = true;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        _ensureOpen();
+        _ensureCapacity(count + 1);
+        buffer[count] = (byte) b;
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        _ensureOpen();
+        _ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count = count + len;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /// 必须在 [#release()] 之前调用
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /// 归还借出的缓冲区, 之后不允许再使用
+    public void release() {
+        closed = true;
+        if (pooled) {
+            pooled = false;
+            bufferPool.releaseArray(buffer);
+        }
+    }
+
+    private void _ensureCapacity(int minCapacity) {
+        if (minCapacity <= buffer.length) {
+            return;
+        }
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("Required array size too large");
+        }
+        var newBuffer = Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length << 1));
+        if (pooled) {
+            pooled = false;
+            bufferPool.releaseArray(buffer);
+        }
+        buffer = newBuffer;
+    }
+
+    private void _ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package dev.scx.format.xml;
+
+import org.codehaus.stax2.XMLStreamWriter2;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/// 基于 Woodstox XMLStreamWriter2 的 XmlWriter
+///
+/// @author scx567888
+/// @version 0.0.1
+record StaxXmlWriter(XMLStreamWriter2 writer) implements XmlWriter {
+
+    public static StaxXmlWriter wrapWriter(XMLStreamWriter writer) {
+        // 这里我们保证 XMLStreamWriter 一定是 XMLStreamWriter2
+        return new StaxXmlWriter((XMLStreamWriter2) writer);
+    }
+
+    @Override
+    public void writeStartElement(String name) throws XMLStreamException {
+        writer.writeStartElement(name);
+    }
+
+    @Override
+    public void writeEmptyElement(String name) throws XMLStreamException {
+        writer.writeEmptyElement(name);
+    }
+
+    @Override
+    public void writeAttribute(String name, String value) throws XMLStreamException {
+        writer.writeAttribute(name, value);
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        writer.writeCharacters(text);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        writer.writeEndElement();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        writer.closeCompletely();
+    }
+
+}
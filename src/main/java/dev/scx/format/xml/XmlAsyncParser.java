@@ -0,0 +1,233 @@
+package dev.scx.format.xml;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import dev.scx.format.xml.element.Element;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.format.xml.element.TextElement;
+import dev.scx.node.Node;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.fasterxml.aalto.AsyncXMLStreamReader.EVENT_INCOMPLETE;
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/// 非阻塞的增量解析器.
+///
+/// 输入以 ByteBuffer 分块的形式到达 (比如事件循环线程上的 HTTP 请求体), 每次 [#feed(ByteBuffer)] 只会处理已经到达的数据, 永远不会阻塞.
+/// 解析状态和 XmlDeserializer 一样保存在显式的 TagElementStack 中, 所有数据到达后调用 [#endOfInput()] 获取完整的 Element.
+///
+/// 基于可选依赖 aalto-xml, 使用前需要自行引入. 仅支持 UTF-8 (及其子集) 编码. 因为 Aalto 不支持 Woodstox 的安全限制属性, 这里由我们自己校验 options 中的各项限制.
+///
+/// 统计信息记为 [XmlOperation#FORMAT_TO_ELEMENT], 在 [#endOfInput()] 或 [#close()] 时提交, parseNanos 只包括 feed 和 endOfInput 内部的耗时.
+///
+/// 非线程安全, 一个实例只能解析一个文档.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class XmlAsyncParser implements AutoCloseable {
+
+    private final AsyncXMLStreamReader<AsyncByteBufferFeeder> reader;
+    private final XmlNodeConverterOptions options;
+    private final int maxNestingDepth;
+    private final int maxChildCount;
+    private final int maxStringLength;
+    private final boolean coalescing;
+    private final TagElementStack stack;
+    // 连续的文本可能被分块打断, 在这里拼接完整后再判断是否为空白
+    private final StringBuilder text;
+    // 等待数据期间处于暂停状态
+    private final XmlProbe probe;
+    // 每一层已有的子元素数量, 下标为 stack.size()
+    private int[] childCounts;
+    private TagElement root;
+    private TagElement curr;
+    private boolean done;
+
+    XmlAsyncParser(AsyncXMLStreamReader<AsyncByteBufferFeeder> reader, XmlNodeConverterOptions options, XmlProbe probe) {
+        this.reader = reader;
+        this.options = options;
+        this.maxNestingDepth = options.maxNestingDepth();
+        this.maxChildCount = options.maxChildCount();
+        this.maxStringLength = options.maxStringLength();
+        this.coalescing = options.coalescing();
+        this.stack = new TagElementStack();
+        this.text = new StringBuilder();
+        this.probe = probe;
+        this.childCounts = new int[10];
+        this.root = null;
+        this.curr = null;
+        this.done = false;
+        this.probe.pause();
+    }
+
+    /// 提供一块新的数据, 方法返回后 buffer 即可被调用方复用
+    public void feed(ByteBuffer buffer) throws XMLStreamException {
+        if (done) {
+            throw new IllegalStateException("XmlAsyncParser is done");
+        }
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        probe.resume();
+        try {
+            probe.addBytesIn(buffer.remaining());
+            reader.getInputFeeder().feedInput(buffer);
+            _parse();
+        } finally {
+            probe.pause();
+        }
+    }
+
+    /// 通知所有数据均已到达, 并返回解析完成的 Element
+    public Element endOfInput() throws XMLStreamException {
+        probe.resume();
+        try (probe) {
+            if (!done) {
+                reader.getInputFeeder().endOfInput();
+                _parse();
+            }
+            if (!done || root == null || curr != null) {
+                throw new XMLStreamException("Unexpected end of input");
+            }
+            probe.success();
+            return root;
+        }
+    }
+
+    /// 是否已经读取到文档末尾
+    public boolean isDone() {
+        return done;
+    }
+
+    /// 解析完成的 Element
+    public Element element() {
+        if (!done) {
+            throw new IllegalStateException("XmlAsyncParser is not done");
+        }
+        return root;
+    }
+
+    /// 解析完成的 Element 转换为 Node, 规则同 [ElementNodeConverter#elementToNode(Element)]
+    public Node node() {
+        return new ElementNodeConverter(options).elementToNode(element());
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        // 未调用 endOfInput 时 视为失败
+        try (probe) {
+            reader.close();
+        }
+    }
+
+    private void _parse() throws XMLStreamException {
+        while (!done) {
+            var t = reader.next();
+            switch (t) {
+                // 当前数据已经全部处理完毕, 等待下一块数据
+                case EVENT_INCOMPLETE -> {
+                    return;
+                }
+                case START_ELEMENT -> {
+                    _flushText();
+                    _startElement();
+                }
+                case END_ELEMENT -> {
+                    _flushText();
+                    curr = stack.popOrNull();
+                }
+                case CHARACTERS -> _appendText();
+                // 与 Woodstox 的 IS_COALESCING 一致, CDATA 视为普通文本
+                case CDATA -> {
+                    if (coalescing) {
+                        _appendText();
+                    } else {
+                        _flushText();
+                    }
+                }
+                case END_DOCUMENT -> {
+                    _flushText();
+                    done = true;
+                }
+                // 其余事件 (注释, 处理指令等) 会打断文本
+                default -> _flushText();
+            }
+        }
+    }
+
+    private void _startElement() throws XMLStreamException {
+        var newElement = new TagElement(reader.getLocalName(), reader.isEmptyElement());
+        _deserializeAttribute(newElement);
+        // 根元素
+        if (curr == null) {
+            if (1 > maxNestingDepth) {
+                throw new XMLStreamException("Nesting depth exceeds limit: " + maxNestingDepth);
+            }
+            probe.countElement(newElement.attributeSize(), 1);
+            root = newElement;
+            curr = newElement;
+            childCounts[0] = 0;
+            return;
+        }
+        var depth = stack.size() + 1;
+        if (depth + 1 > maxNestingDepth) {
+            throw new XMLStreamException("Nesting depth exceeds limit: " + maxNestingDepth);
+        }
+        childCounts[depth - 1]++;
+        if (childCounts[depth - 1] > maxChildCount) {
+            throw new XMLStreamException("Child count exceeds limit: " + maxChildCount);
+        }
+        if (depth == childCounts.length) {
+            childCounts = Arrays.copyOf(childCounts, depth + Math.max(10, depth >> 1));
+        }
+        childCounts[depth] = 0;
+        probe.countElement(newElement.attributeSize(), depth + 1);
+        curr.add(newElement);
+        stack.push(curr);
+        curr = newElement;
+    }
+
+    private void _deserializeAttribute(TagElement tagElement) throws XMLStreamException {
+        var count = reader.getAttributeCount();
+        if (count > maxChildCount) {
+            throw new XMLStreamException("Attribute count exceeds limit: " + maxChildCount);
+        }
+        // 处理属性, 数量已知 可以预先分配容量
+        tagElement.ensureAttributeCapacity(count);
+        for (int i = 0; i < count; i++) {
+            var n = reader.getAttributeLocalName(i);
+            var v = reader.getAttributeValue(i);
+            if (v.length() > maxStringLength) {
+                throw new XMLStreamException("String length exceeds limit: " + maxStringLength);
+            }
+            tagElement.addAttribute(n, v);
+        }
+    }
+
+    private void _appendText() throws XMLStreamException {
+        // 根元素之外的文本只可能是空白, 忽略即可
+        if (curr == null) {
+            return;
+        }
+        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        if (text.length() > maxStringLength) {
+            throw new XMLStreamException("String length exceeds limit: " + maxStringLength);
+        }
+    }
+
+    private void _flushText() {
+        if (text.isEmpty()) {
+            return;
+        }
+        // 纯空白 (比如缩进) 无需创建 String
+        if (!XmlChars.isBlank(text)) {
+            curr.add(new TextElement(text.toString()));
+            probe.countText();
+        }
+        text.setLength(0);
+    }
+
+}
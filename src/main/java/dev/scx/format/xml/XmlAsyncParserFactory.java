@@ -0,0 +1,35 @@
+package dev.scx.format.xml;
+
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+
+/// 创建 XmlAsyncParser 的 Aalto 工厂.
+///
+/// aalto-xml 是可选依赖, 所有对 Aalto 类的引用都集中在这里和 XmlAsyncParser 中,
+/// CompiledXmlElementConverter 只在第一次调用 createAsyncParser 时才会加载这个类, 所以不使用异步解析时 classpath 上无需 Aalto.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlAsyncParserFactory {
+
+    private final XmlNodeConverterOptions options;
+    private final AsyncXMLInputFactory xmlInputFactory;
+
+    XmlAsyncParserFactory(XmlNodeConverterOptions options) {
+        this.options = options;
+        this.xmlInputFactory = createAsyncXmlInputFactory(options);
+    }
+
+    private static AsyncXMLInputFactory createAsyncXmlInputFactory(XmlNodeConverterOptions options) {
+        // Woodstox 不支持非阻塞解析, 这里使用同一作者的 Aalto
+        // Aalto 本身不处理 DTD 也不会加载外部实体, 安全限制由 XmlAsyncParser 自己校验
+        // Aalto 的名称同样来自工厂内共享的符号表
+        // Aalto 的异步模式不支持 IS_COALESCING, 文本的合并由 XmlAsyncParser 自己完成
+        return new InputFactoryImpl();
+    }
+
+    XmlAsyncParser createAsyncParser(XmlProbe probe) {
+        return new XmlAsyncParser(xmlInputFactory.createAsyncForByteBuffer(), options, probe);
+    }
+
+}
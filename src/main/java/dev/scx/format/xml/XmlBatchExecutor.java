@@ -0,0 +1,68 @@
+package dev.scx.format.xml;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/// 在虚拟线程上执行批量转换, 每个条目一个虚拟线程, 由 Semaphore 限制同一时间执行的条目数量.
+///
+/// 只有获取到许可后才会读取下一个输入, 所以惰性的输入 (比如 Stream<InputStream>) 同一时间最多只会打开 concurrency 个.
+/// 每个条目的异常会被单独记录, 不会影响其他条目. 结果按输入顺序返回.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlBatchExecutor {
+
+    public static <I, O> List<XmlBatchResult<O>> run(Iterator<I> inputs, int concurrency, Task<I, O> task) {
+        var semaphore = new Semaphore(concurrency);
+        var futures = new ArrayList<Future<XmlBatchResult<O>>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (inputs.hasNext()) {
+                semaphore.acquire();
+                I input;
+                try {
+                    input = inputs.next();
+                } catch (RuntimeException e) {
+                    semaphore.release();
+                    throw e;
+                }
+                futures.add(executor.submit(() -> {
+                    try {
+                        return XmlBatchResult.success(task.apply(input));
+                    } catch (Exception e) {
+                        return XmlBatchResult.<O>failure(e);
+                    } finally {
+                        semaphore.release();
+                    }
+                }));
+            }
+        } catch (InterruptedException e) {
+            // 已经提交的条目会在 executor 关闭时执行完毕, 未读取的输入不再处理
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Batch conversion interrupted");
+        }
+        // executor 关闭时会等待所有条目完成
+        var results = new ArrayList<XmlBatchResult<O>>(futures.size());
+        for (var future : futures) {
+            // 只有 Error (比如 OutOfMemoryError) 会逃出条目
+            if (future.state() == Future.State.FAILED && future.exceptionNow() instanceof Error error) {
+                throw error;
+            }
+            results.add(future.resultNow());
+        }
+        return results;
+    }
+
+    /// 单个条目的转换
+    @FunctionalInterface
+    interface Task<I, O> {
+
+        O apply(I input) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package dev.scx.format.xml;
+
+/// 批量转换中单个条目的结果, value 和 error 有且只有一个不为 null.
+///
+/// 详见 [CompiledXmlNodeConverter#formatToNodeAll(java.util.List, java.nio.charset.Charset)]
+///
+/// @author scx567888
+/// @version 0.0.1
+public record XmlBatchResult<T>(T value, Exception error) {
+
+    public static <T> XmlBatchResult<T> success(T value) {
+        return new XmlBatchResult<>(value, null);
+    }
+
+    public static <T> XmlBatchResult<T> failure(Exception error) {
+        return new XmlBatchResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+}
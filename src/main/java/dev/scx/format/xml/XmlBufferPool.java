@@ -0,0 +1,135 @@
+package dev.scx.format.xml;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/// 有界的无锁缓冲区池, 复用转换过程中由我们自己分配的缓冲区, 使用的位置见 [XmlNodeConverterOptions#bufferPool()].
+///
+/// Woodstox 通过 ThreadLocal 中的 SoftReference 复用自己的缓冲区, 但虚拟线程每次转换都是一个新的线程, 永远无法命中.
+/// 这里的池与线程无关: byte[] 按线程 id 分段 (striped), 每段固定数量的槽位, 借出和归还都只是一次 CAS, 槽位已满时直接丢弃;
+/// 直接内存缓冲区较大且使用较少, 只保留 maxDirectBuffers 个, 不分段.
+/// byte[] 的大小统一为 [#ARRAY_SIZE], 扩容过 或 大小不同的缓冲区不会被保留, 所以池的内存占用有固定的上限.
+///
+/// 注意: Woodstox 自身的解析和写出缓冲区没有对外的扩展点, 不受此池影响.
+///
+/// 线程安全.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class XmlBufferPool {
+
+    /// 池中 byte[] 的大小. 同时也是读取输入时一次性放入池中数组的上限, 大多数单条消息都小于这个大小
+    static final int ARRAY_SIZE = 16 * 1024;
+
+    private static final XmlBufferPool SHARED = new XmlBufferPool(Runtime.getRuntime().availableProcessors(), 4, 2);
+
+    private final AtomicReferenceArray<byte[]> arrays;
+    private final int stripeMask;
+    private final int slotsPerStripe;
+    private final AtomicReferenceArray<ByteBuffer> directBuffers;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /// @param stripes          分段数量, 会向上取整为 2 的幂
+    /// @param slotsPerStripe   每段保留的 byte[] 数量, 0 表示不保留
+    /// @param maxDirectBuffers 保留的直接内存缓冲区数量, 0 表示不保留
+    public XmlBufferPool(int stripes, int slotsPerStripe, int maxDirectBuffers) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must > 0");
+        }
+        if (slotsPerStripe < 0) {
+            throw new IllegalArgumentException("slotsPerStripe cannot < 0");
+        }
+        if (maxDirectBuffers < 0) {
+            throw new IllegalArgumentException("maxDirectBuffers cannot < 0");
+        }
+        var stripeCount = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.arrays = new AtomicReferenceArray<>(stripeCount * slotsPerStripe);
+        this.stripeMask = stripeCount - 1;
+        this.slotsPerStripe = slotsPerStripe;
+        this.directBuffers = new AtomicReferenceArray<>(maxDirectBuffers);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /// 默认使用的共享实例: 分段数量为 CPU 核数, 每段 4 个 byte[], 2 个直接内存缓冲区
+    public static XmlBufferPool shared() {
+        return SHARED;
+    }
+
+    /// 从池中借出的次数
+    public long hits() {
+        return hits.sum();
+    }
+
+    /// 池中没有可用的缓冲区, 新分配的次数
+    public long misses() {
+        return misses.sum();
+    }
+
+    /// 借出一个长度为 [#ARRAY_SIZE] 的 byte[], 内容未清空
+    byte[] acquireArray() {
+        var start = _stripeStart();
+        for (int i = start; i < start + slotsPerStripe; i++) {
+            // 先读一次, 避免对空槽位执行写操作
+            if (arrays.get(i) == null) {
+                continue;
+            }
+            var array = arrays.getAndSet(i, null);
+            if (array != null) {
+                hits.increment();
+                return array;
+            }
+        }
+        misses.increment();
+        return new byte[ARRAY_SIZE];
+    }
+
+    /// 归还 byte[], 长度不是 [#ARRAY_SIZE] (比如扩容过) 或 槽位已满时直接丢弃. 归还后调用方不允许再使用
+    void releaseArray(byte[] array) {
+        if (array.length != ARRAY_SIZE) {
+            return;
+        }
+        var start = _stripeStart();
+        for (int i = start; i < start + slotsPerStripe; i++) {
+            if (arrays.get(i) == null && arrays.compareAndSet(i, null, array)) {
+                return;
+            }
+        }
+    }
+
+    /// 借出一个容量为 capacity 的直接内存缓冲区, 已经 clear
+    ByteBuffer acquireDirect(int capacity) {
+        for (int i = 0; i < directBuffers.length(); i++) {
+            // 先检查容量再取出, 容量不同的缓冲区留在池中给其他调用方使用
+            var buffer = directBuffers.get(i);
+            if (buffer == null || buffer.capacity() != capacity) {
+                continue;
+            }
+            if (directBuffers.compareAndSet(i, buffer, null)) {
+                hits.increment();
+                return buffer.clear();
+            }
+        }
+        misses.increment();
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /// 归还直接内存缓冲区, 槽位已满时直接丢弃. 归还后调用方不允许再使用
+    void releaseDirect(ByteBuffer buffer) {
+        for (int i = 0; i < directBuffers.length(); i++) {
+            if (directBuffers.get(i) == null && directBuffers.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private int _stripeStart() {
+        // 虚拟线程的 id 是递增的, 混合一次高低位即可均匀分布
+        var id = Thread.currentThread().threadId();
+        var hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & stripeMask) * slotsPerStripe;
+    }
+
+}
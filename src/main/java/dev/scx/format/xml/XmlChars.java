@@ -0,0 +1,70 @@
+package dev.scx.format.xml;
+
+import javax.xml.stream.XMLStreamReader;
+
+/// 文本扫描的快速路径.
+///
+/// 大部分文本要么是纯空白 (缩进), 要么是不需要任何转义的 ASCII (比如 base64), 先整体扫描一遍,
+/// 命中时即可跳过创建 String 或逐字符转义的慢速路径.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlChars {
+
+    private XmlChars() {
+
+    }
+
+    /// 与 String.isBlank 的规则相同, 但无需先创建 String (代理字符一定不是空白字符, 所以可以按 char 判断)
+    public static boolean isBlank(char[] chars, int start, int length) {
+        var end = start + length;
+        for (int i = start; i < end; i++) {
+            if (!_isWhitespace(chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /// 当前文本事件是否为纯空白, 规则同 [#isBlank(char\[\], int, int)].
+    ///
+    /// 先询问解析器: Woodstox 在读取缩进 (标签之间的换行和空格) 时已经知道它是纯空白, 此时无需再次扫描.
+    /// isWhiteSpace 只认 XML 空白字符, 所以返回 false 时还需要按 String.isBlank 的规则再判断一次.
+    public static boolean isBlank(XMLStreamReader reader) {
+        return reader.isWhiteSpace() || isBlank(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+    }
+
+    /// 同 [#isBlank(char\[\], int, int)]
+    public static boolean isBlank(CharSequence text) {
+        var length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (!_isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /// 第一个非 ASCII 或者在 table 中标记 (非 0) 的字符的索引, 全部干净时返回 text.length()
+    ///
+    /// @param table 长度为 128 的表
+    public static int cleanAsciiLength(String text, byte[] table) {
+        var length = text.length();
+        for (int i = 0; i < length; i++) {
+            var c = text.charAt(i);
+            if (c >= 0x80 || table[c] != 0) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static boolean _isWhitespace(char c) {
+        // 可见的 ASCII 字符一定不是空白, 这是最常见的情况
+        if (c > ' ' && c < 0x80) {
+            return false;
+        }
+        return Character.isWhitespace(c);
+    }
+
+}
@@ -0,0 +1,597 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.FormatToNodeException;
+import dev.scx.node.ArrayNode;
+import dev.scx.node.Node;
+import dev.scx.node.ObjectNode;
+import dev.scx.node.StringNode;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static dev.scx.format.xml.ElementNodeConverter.mergeTexts;
+import static dev.scx.format.xml.ElementNodeConverter.putOrAppend;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/// 将记录型的大文件 (根元素下有大量子元素) 切分为多块, 在 ForkJoinPool.commonPool 上分别解析, 再按原顺序合并.
+///
+/// 切分只在字节层面进行: 从每个目标位置向后寻找下一个记录的起始标签 `<recordName`, 并且它之前最后一个非空白字节为 `>`
+/// (即上一条记录的结束标签), 不解析中间的内容. 未指定记录名称时, 使用根元素第一个子元素的名称.
+/// 所以只要记录内部没有同名的元素, 切分点总是落在根元素的直接子元素上.
+/// 每一块都被包装为 `根元素起始标签 + 块内容 + 根元素结束标签` 单独解析, 所以切分点如果落在记录内部, 注释, CDATA 或处理指令中,
+/// 相邻的块一定不是完整的 XML, 解析会失败. 任何一块失败时都由调用方回退到顺序解析 (真正的语法错误也会由顺序解析报告).
+///
+/// 以下情况无法安全切分, [#open(CompiledXmlElementConverter, File, Charset)] 直接返回 null:
+/// 非 UTF-8 编码, 存在 DOCTYPE, 根元素自闭合, 根元素之后还有其他内容 (比如注释), 文件头中找不到第一个子元素, 文件不足两块.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlChunkedParser {
+
+    // 读取文件头尾时 最多读取的字节数, 根元素的起始标签必须在此范围内
+    private static final int PEEK_SIZE = 64 * 1024;
+    // 寻找切分点时 每次读取的字节数
+    private static final int SCAN_SIZE = 8 * 1024;
+
+    private final CompiledXmlElementConverter xmlElementConverter;
+    private final File file;
+    private final String rootName;
+    // 根元素的起始标签 和 结束标签, 用于包装每一块
+    private final byte[] prefix;
+    private final byte[] suffix;
+    // 第 i 块为 bounds[i] 到 bounds[i + 1]
+    private final long[] bounds;
+    private final int maxChildCount;
+    private final int windowSize;
+
+    private XmlChunkedParser(CompiledXmlElementConverter xmlElementConverter, File file, String rootName, byte[] prefix, byte[] suffix, long[] bounds) {
+        this.xmlElementConverter = xmlElementConverter;
+        this.file = file;
+        this.rootName = rootName;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.bounds = bounds;
+        this.maxChildCount = xmlElementConverter.options0().maxChildCount();
+        this.windowSize = xmlElementConverter.options0().fileBufferSize();
+    }
+
+    /// 扫描文件的头尾并确定切分点, 无法安全切分时返回 null
+    ///
+    /// @param recordName 只在此名称的元素前切分, 为 null 或 `*` 时使用根元素第一个子元素的名称
+    public static XmlChunkedParser open(CompiledXmlElementConverter xmlElementConverter, File file, Charset charset, String recordName) throws IOException {
+        // 只有 UTF-8 才能直接在字节上寻找 '<'
+        if (!UTF_8.equals(charset)) {
+            return null;
+        }
+        var chunkSize = xmlElementConverter.options0().parallelChunkSize();
+        try (var channel = FileChannel.open(file.toPath(), READ)) {
+            var size = channel.size();
+            if (size < 2L * chunkSize) {
+                return null;
+            }
+            // 1, 根元素的起始标签
+            var head = _read(channel, 0, (int) Math.min(size, PEEK_SIZE));
+            var rootStart = _findRootStart(head);
+            if (rootStart < 0) {
+                return null;
+            }
+            var contentStart = _findTagEnd(head, rootStart);
+            if (contentStart < 0) {
+                return null;
+            }
+            var nameEnd = rootStart + 1;
+            while (nameEnd < contentStart && !_isWhitespace(head[nameEnd]) && head[nameEnd] != '/' && head[nameEnd] != '>') {
+                nameEnd++;
+            }
+            var name = Arrays.copyOfRange(head, rootStart + 1, nameEnd);
+            byte[] splitName;
+            if (recordName == null || "*".equals(recordName)) {
+                splitName = _findFirstChildName(head, contentStart);
+                if (splitName == null) {
+                    return null;
+                }
+            } else {
+                splitName = recordName.getBytes(UTF_8);
+            }
+            // 2, 根元素的结束标签, 之后只允许空白
+            var tailLength = (int) Math.min(size, PEEK_SIZE);
+            var tail = _read(channel, size - tailLength, tailLength);
+            var rootEnd = _findRootEnd(tail, name);
+            if (rootEnd < 0) {
+                return null;
+            }
+            var contentEnd = size - tailLength + rootEnd;
+            if (contentEnd <= contentStart) {
+                return null;
+            }
+            // 3, 切分点
+            var bounds = new ArrayList<Long>();
+            bounds.add((long) contentStart);
+            var position = contentStart + (long) chunkSize;
+            while (position < contentEnd) {
+                var split = _findRecordStart(channel, position, contentEnd, splitName);
+                if (split < 0) {
+                    break;
+                }
+                bounds.add(split);
+                position = split + chunkSize;
+            }
+            bounds.add(contentEnd);
+            if (bounds.size() < 3) {
+                return null;
+            }
+            var prefix = Arrays.copyOfRange(head, rootStart, contentStart);
+            var suffix = new byte[name.length + 3];
+            suffix[0] = '<';
+            suffix[1] = '/';
+            System.arraycopy(name, 0, suffix, 2, name.length);
+            suffix[suffix.length - 1] = '>';
+            var array = new long[bounds.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = bounds.get(i);
+            }
+            return new XmlChunkedParser(xmlElementConverter, file, new String(name, UTF_8), prefix, suffix, array);
+        }
+    }
+
+    public String rootName() {
+        return rootName;
+    }
+
+    /// 解析整个文档, 规则同 [XmlNodeDeserializer]. 任何一块解析失败时返回 null
+    public Node parse() {
+        var futures = new ArrayList<CompletableFuture<Chunk>>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            futures.add(_submit(i, null));
+        }
+        var elements = new ObjectNode();
+        var texts = new ArrayNode();
+        var childCount = 0L;
+        try {
+            for (var future : futures) {
+                var chunk = future.join();
+                childCount = childCount + chunk.childCount;
+                // 根元素的子元素数量 由我们自己校验
+                if (childCount > maxChildCount) {
+                    throw new FormatToNodeException("Child count exceeds limit: " + maxChildCount);
+                }
+                // 属性只出现在第一块中, 所以顺序同 XmlNodeDeserializer (属性在前)
+                for (int i = 0; i < chunk.names.size(); i++) {
+                    putOrAppend(elements, chunk.names.get(i), chunk.nodes.get(i));
+                }
+                for (var text : chunk.texts) {
+                    texts.add(text);
+                }
+            }
+        } catch (CompletionException e) {
+            _cancel(futures);
+            _rethrowError(e);
+            return null;
+        } catch (FormatToNodeException e) {
+            _cancel(futures);
+            throw e;
+        }
+        return mergeTexts(elements, texts);
+    }
+
+    /// 按顺序返回根元素下名称为 recordName 的子元素 (`*` 表示全部).
+    ///
+    /// 同一时间最多有 commonPool 并行度 x 2 块正在解析或等待读取. 任何一块解析失败时, 使用 fallback 重新顺序读取, 并跳过已经返回的记录.
+    /// probe 在读取完毕或 Stream 被关闭时关闭.
+    public Stream<Node> stream(String recordName, XmlProbe probe, Supplier<Stream<Node>> fallback) {
+        var iterator = new ChunkIterator(recordName, probe, fallback);
+        var spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /// @param recordName 为 null 时读取所有子元素, 属性和文本 (即完整的根元素)
+    private CompletableFuture<Chunk> _submit(int index, String recordName) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return _parseChunk(index, recordName);
+            } catch (XMLStreamException e) {
+                throw new FormatToNodeException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Chunk _parseChunk(int index, String recordName) throws XMLStreamException, IOException {
+        var start = bounds[index];
+        var length = bounds[index + 1] - start;
+        var inputStream = new SequenceInputStream(Collections.enumeration(List.of(
+            new ByteArrayInputStream(prefix),
+            new MappedFileInputStream(file, start, length, (int) Math.min(windowSize, length)),
+            new ByteArrayInputStream(suffix)
+        )));
+        AutoCloseableXMLStreamReader xmlStreamReader;
+        try {
+            xmlStreamReader = xmlElementConverter.createRecordXMLStreamReader(inputStream, UTF_8.name());
+        } catch (XMLStreamException e) {
+            // 创建失败时 reader 不会接管 inputStream, 需要我们自己关闭
+            inputStream.close();
+            throw e;
+        }
+        try (xmlStreamReader) {
+            var p = xmlStreamReader.reader();
+            var chunk = new Chunk();
+            while (p.getEventType() != START_ELEMENT) {
+                p.next();
+            }
+            // 包装用的根元素 属性只在第一块中保留
+            if (recordName == null && index == 0) {
+                for (int i = 0; i < p.getAttributeCount(); i++) {
+                    chunk.add(p.getAttributeLocalName(i), new StringNode(p.getAttributeValue(i)));
+                }
+            }
+            while (true) {
+                var t = p.next();
+                if (t == START_ELEMENT) {
+                    var name = p.getLocalName();
+                    if (recordName != null && !"*".equals(recordName) && !recordName.equals(name)) {
+                        p.skipElement();
+                        continue;
+                    }
+                    chunk.childCount++;
+                    // 根元素的子元素数量不由 Woodstox 限制, 但记录内部依然需要校验
+                    chunk.add(name, XmlNodeDeserializer.deserializeElement(p, maxChildCount));
+                } else if (t == CHARACTERS) {
+                    if (recordName == null && !XmlChars.isBlank(p)) {
+                        chunk.texts.add(new StringNode(p.getText()));
+                    }
+                } else if (t == END_ELEMENT) {
+                    break;
+                }
+            }
+            // 验证是否存在后续多余内容
+            while (p.hasNext()) {
+                p.next();
+            }
+            return chunk;
+        }
+    }
+
+    private static void _cancel(Collection<CompletableFuture<Chunk>> futures) {
+        // 尚未开始的块不会再执行, 正在执行的块会在完成后被丢弃
+        for (var future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /// Error (比如 OutOfMemoryError) 不应触发回退
+    private static void _rethrowError(CompletionException e) {
+        if (e.getCause() instanceof Error error) {
+            throw error;
+        }
+    }
+
+    private static byte[] _read(FileChannel channel, long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            var n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        return buffer.position() == length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /// 跳过 BOM, XML 声明, 处理指令, 注释和空白, 返回根元素 `<` 的位置, 遇到 DOCTYPE 或非 UTF-8 的声明时返回 -1
+    private static int _findRootStart(byte[] head) {
+        var i = 0;
+        if (head.length >= 3 && head[0] == (byte) 0xEF && head[1] == (byte) 0xBB && head[2] == (byte) 0xBF) {
+            i = 3;
+        }
+        while (i < head.length) {
+            var b = head[i];
+            if (_isWhitespace(b)) {
+                i++;
+                continue;
+            }
+            if (b != '<' || i + 1 >= head.length) {
+                return -1;
+            }
+            var next = head[i + 1];
+            if (next == '?') {
+                var end = _indexOf(head, "?>", i + 2);
+                if (end < 0) {
+                    return -1;
+                }
+                // 切分出的块没有 XML 声明, 总是按 UTF-8 解析
+                var declaration = new String(head, i, end - i, UTF_8).toLowerCase(Locale.ROOT);
+                if (declaration.contains("encoding") && !declaration.contains("utf-8")) {
+                    return -1;
+                }
+                i = end + 2;
+            } else if (next == '!') {
+                // DOCTYPE 可能定义实体, 无法切分
+                if (!_startsWith(head, i, "<!--")) {
+                    return -1;
+                }
+                var end = _indexOf(head, "-->", i + 4);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 3;
+            } else {
+                return _isNameStart(next) ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    /// 返回起始标签结束 `>` 之后的位置, 自闭合或不完整时返回 -1
+    private static int _findTagEnd(byte[] head, int start) {
+        byte quote = 0;
+        for (int i = start + 1; i < head.length; i++) {
+            var b = head[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return head[i - 1] == '/' ? -1 : i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /// 返回根元素结束标签 `</name>` 在 tail 中的位置, 结束标签之后存在空白以外的内容时返回 -1
+    private static int _findRootEnd(byte[] tail, byte[] name) {
+        var i = tail.length - 1;
+        while (i >= 0 && _isWhitespace(tail[i])) {
+            i--;
+        }
+        if (i < 0 || tail[i] != '>') {
+            return -1;
+        }
+        i--;
+        while (i >= 0 && _isWhitespace(tail[i])) {
+            i--;
+        }
+        var start = i - name.length - 1;
+        if (start < 0 || tail[start] != '<' || tail[start + 1] != '/') {
+            return -1;
+        }
+        if (!Arrays.equals(tail, start + 2, i + 1, name, 0, name.length)) {
+            return -1;
+        }
+        return start;
+    }
+
+    /// 返回根元素之后第一个子元素的名称, 在 head 中找不到时返回 null
+    private static byte[] _findFirstChildName(byte[] head, int contentStart) {
+        for (int i = contentStart; i < head.length - 1; i++) {
+            if (head[i] == '<' && _isNameStart(head[i + 1])) {
+                var nameEnd = i + 1;
+                while (nameEnd < head.length && !_isWhitespace(head[nameEnd]) && head[nameEnd] != '/' && head[nameEnd] != '>') {
+                    nameEnd++;
+                }
+                return nameEnd < head.length ? Arrays.copyOfRange(head, i + 1, nameEnd) : null;
+            }
+        }
+        return null;
+    }
+
+    /// 从 position 开始寻找下一个 `<name` 起始标签 (之后为空白, `/` 或 `>`), 并且之前最后一个非空白字节为 `>`, 找不到时返回 -1
+    private static long _findRecordStart(FileChannel channel, long position, long end, byte[] name) throws IOException {
+        // '<' + 名称 + 分隔符
+        var tagLength = name.length + 2;
+        var scanSize = Math.max(SCAN_SIZE, tagLength * 2);
+        // position 之前的内容未知, 所以第一个候选位置之前至少要出现一个 '>'
+        byte last = 0;
+        while (end - position >= tagLength) {
+            var length = (int) Math.min(scanSize, end - position);
+            var buffer = _read(channel, position, length);
+            if (buffer.length < length) {
+                return -1;
+            }
+            // 只检查完整位于 buffer 中的候选位置, 剩余部分在下一次读取中检查
+            var limit = buffer.length - tagLength;
+            var i = 0;
+            for (; i <= limit; i++) {
+                var b = buffer[i];
+                if (b == '<' && last == '>' && _isRecordStart(buffer, i, name)) {
+                    return position + i;
+                }
+                if (!_isWhitespace(b)) {
+                    last = b;
+                }
+            }
+            position = position + i;
+        }
+        return -1;
+    }
+
+    private static boolean _isRecordStart(byte[] buffer, int start, byte[] name) {
+        var nameEnd = start + 1 + name.length;
+        if (!Arrays.equals(buffer, start + 1, nameEnd, name, 0, name.length)) {
+            return false;
+        }
+        var b = buffer[nameEnd];
+        return _isWhitespace(b) || b == '/' || b == '>';
+    }
+
+    private static boolean _isNameStart(byte b) {
+        // 非 ASCII 字符也可以作为名称的开头, 交给解析器校验
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == ':' || b < 0;
+    }
+
+    private static boolean _isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static boolean _startsWith(byte[] bytes, int offset, String prefix) {
+        if (offset + prefix.length() > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int _indexOf(byte[] bytes, String target, int from) {
+        for (int i = from; i + target.length() <= bytes.length; i++) {
+            if (_startsWith(bytes, i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /// 一块的解析结果, 顺序同原文档
+    private static final class Chunk {
+
+        private final ArrayList<String> names = new ArrayList<>();
+        private final ArrayList<Node> nodes = new ArrayList<>();
+        private final ArrayList<StringNode> texts = new ArrayList<>();
+        private int childCount;
+
+        private void add(String name, Node node) {
+            names.add(name);
+            nodes.add(node);
+        }
+
+    }
+
+    /// 按顺序读取每一块的记录, 同时在后台预先解析后续的块
+    private final class ChunkIterator implements Iterator<Node>, AutoCloseable {
+
+        private final String recordName;
+        private final XmlProbe probe;
+        private final Supplier<Stream<Node>> fallback;
+        private final ArrayDeque<CompletableFuture<Chunk>> pending;
+        private final int window;
+        private int nextIndex;
+        private List<Node> current;
+        private int currentIndex;
+        // 已经返回的记录数, 回退时跳过
+        private long returned;
+        private Stream<Node> fallbackStream;
+        private Iterator<Node> fallbackIterator;
+        private boolean closed;
+
+        private ChunkIterator(String recordName, XmlProbe probe, Supplier<Stream<Node>> fallback) {
+            this.recordName = recordName;
+            this.probe = probe;
+            this.fallback = fallback;
+            this.pending = new ArrayDeque<>();
+            this.window = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+            this.nextIndex = 0;
+            this.current = List.of();
+            this.currentIndex = 0;
+            this.returned = 0;
+            this.fallbackStream = null;
+            this.fallbackIterator = null;
+            this.closed = false;
+            _fill();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            while (true) {
+                if (fallbackIterator != null) {
+                    return _hasNextFallback();
+                }
+                if (currentIndex < current.size()) {
+                    return true;
+                }
+                var future = pending.poll();
+                if (future == null) {
+                    // 所有块都已读取完毕, 及时释放资源
+                    probe.success();
+                    close();
+                    return false;
+                }
+                _fill();
+                try {
+                    current = future.join().nodes;
+                    currentIndex = 0;
+                } catch (CompletionException e) {
+                    _cancel(pending);
+                    pending.clear();
+                    _rethrowError(e);
+                    current = List.of();
+                    fallbackStream = fallback.get().skip(returned);
+                    fallbackIterator = fallbackStream.iterator();
+                }
+            }
+        }
+
+        @Override
+        public Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (fallbackIterator != null) {
+                return fallbackIterator.next();
+            }
+            var node = current.get(currentIndex);
+            // 已经返回的记录不再持有
+            current.set(currentIndex, null);
+            currentIndex++;
+            returned++;
+            return node;
+        }
+
+        private boolean _hasNextFallback() {
+            try {
+                if (fallbackIterator.hasNext()) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            probe.success();
+            close();
+            return false;
+        }
+
+        private void _fill() {
+            while (pending.size() < window && nextIndex < bounds.length - 1) {
+                pending.add(_submit(nextIndex, recordName));
+                nextIndex++;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            _cancel(pending);
+            pending.clear();
+            current = List.of();
+            try (probe) {
+                if (fallbackStream != null) {
+                    fallbackStream.close();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.xml.element.CompactDocument;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.Arrays;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/// 直接从 StAX 事件构建 CompactDocument, 不生成中间的 TagElement 树.
+///
+/// 规则 (包括投影) 与 [XmlDeserializer] 完全一致, 文本直接从解析器的字符缓冲区复制.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlCompactDeserializer {
+
+    /// @param projection 为 null 时保留完整的文档
+    public static CompactDocument deserialize(XMLStreamReader2 reader, XmlProjection projection) throws XMLStreamException {
+        // 1, 循环直到找到第一个元素起始
+        while (reader.getEventType() != START_ELEMENT) {
+            reader.next();
+        }
+        // 2, 解析为 CompactDocument 结构
+        var document = _deserializeDocument(reader, XmlProjection.forRoot(projection, reader.getLocalName()));
+        // 3, 验证是否存在后续多余内容
+        while (reader.hasNext()) {
+            // 非法内容 Woodstox 会为直接抛异常 无需我们处理
+            reader.next();
+        }
+        return document;
+    }
+
+    private static CompactDocument _deserializeDocument(XMLStreamReader2 p, XmlProjection rootProjection) throws XMLStreamException {
+        var builder = new CompactDocument.Builder();
+        // 每一层的投影, 下标为 depth - 1. null 表示保留完整的子树, 此时属性和文本也需要保留
+        var projections = new XmlProjection[10];
+        // 每一层的名称, 投影中的祖先元素在命中后代时才写入 builder
+        var names = new String[10];
+        projections[0] = rootProjection;
+        names[0] = p.getLocalName();
+        // 已经写入 builder 的标签层数, 总是从根元素开始连续的若干层
+        var written = 0;
+        var rootWritten = rootProjection == null;
+        if (rootWritten) {
+            _startTag(p, builder, true);
+            written = 1;
+        }
+        // 当前尚未结束的标签数量
+        var depth = 1;
+        while (depth > 0) {
+            var t = p.next();
+            switch (t) {
+                case START_ELEMENT -> {
+                    var parentProjection = projections[depth - 1];
+                    XmlProjection projection = null;
+                    if (parentProjection != null) {
+                        projection = parentProjection.child(p.getLocalName());
+                        if (projection == null) {
+                            // 不在投影中, 跳过整个子树
+                            p.skipElement();
+                            continue;
+                        }
+                        if (projection.keepAll()) {
+                            projection = null;
+                        }
+                    }
+                    if (projection == null) {
+                        // 命中, 先补上尚未写入的祖先元素
+                        for (int i = written; i < depth; i++) {
+                            builder.startTag(names[i], false);
+                        }
+                        _startTag(p, builder, true);
+                        written = depth + 1;
+                        rootWritten = true;
+                    }
+                    if (depth == projections.length) {
+                        projections = Arrays.copyOf(projections, depth * 2);
+                        names = Arrays.copyOf(names, depth * 2);
+                    }
+                    projections[depth] = projection;
+                    names[depth] = p.getLocalName();
+                    depth++;
+                }
+                case END_ELEMENT -> {
+                    depth--;
+                    // 没有命中任何后代的祖先元素 从未写入
+                    if (written > depth) {
+                        builder.endTag();
+                        written = depth;
+                    }
+                }
+                case CHARACTERS -> {
+                    // 投影中的祖先元素 不保留文本
+                    if (projections[depth - 1] == null) {
+                        _text(p, builder);
+                    }
+                }
+                default -> {
+                    // 忽略其他所有情况
+                }
+            }
+        }
+        // 根元素没有命中任何后代, 同 XmlDeserializer 为自闭合的空元素
+        if (!rootWritten) {
+            builder.startTag(names[0], true).endTag();
+        }
+        return builder.build();
+    }
+
+    private static void _startTag(XMLStreamReader2 p, CompactDocument.Builder builder, boolean withAttributes) throws XMLStreamException {
+        builder.startTag(p.getLocalName(), p.isEmptyElement());
+        if (!withAttributes) {
+            return;
+        }
+        // 处理属性
+        for (int i = 0; i < p.getAttributeCount(); i++) {
+            builder.attribute(p.getAttributeLocalName(i), p.getAttributeValue(i));
+        }
+    }
+
+    private static void _text(XMLStreamReader2 p, CompactDocument.Builder builder) {
+        if (XmlChars.isBlank(p)) {
+            return;
+        }
+        builder.text(p.getTextCharacters(), p.getTextStart(), p.getTextLength());
+    }
+
+}
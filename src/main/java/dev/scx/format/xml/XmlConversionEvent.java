@@ -0,0 +1,61 @@
+package dev.scx.format.xml;
+
+import jdk.jfr.*;
+
+/// 每次转换发出的 JDK Flight Recorder 事件, 字段同 [XmlMetrics]
+///
+/// @author scx567888
+/// @version 0.0.1
+@Name("dev.scx.format.xml.XmlConversion")
+@Label("XML Conversion")
+@Category({"SCX", "XML"})
+@Description("A single parse, convert or serialize call of scx-format-xml")
+@StackTrace(false)
+final class XmlConversionEvent extends Event {
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(XmlConversionEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Bytes In")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    long bytesOut;
+
+    @Label("Element Count")
+    long elementCount;
+
+    @Label("Attribute Count")
+    long attributeCount;
+
+    @Label("Text Count")
+    long textCount;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseNanos;
+
+    @Label("Convert Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long convertNanos;
+
+    @Label("Serialize Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long serializeNanos;
+
+    @Label("Success")
+    boolean success;
+
+    /// 没有正在进行的录制 或 事件被关闭时返回 false
+    static boolean isTypeEnabled() {
+        return EVENT_TYPE.isEnabled();
+    }
+
+}
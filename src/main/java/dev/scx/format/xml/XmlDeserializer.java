@@ -7,6 +7,7 @@ import org.codehaus.stax2.XMLStreamReader2;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import java.util.Arrays;
 
 import static javax.xml.stream.XMLStreamConstants.*;
 
@@ -16,13 +17,15 @@ import static javax.xml.stream.XMLStreamConstants.*;
 /// @version 0.0.1
 final class XmlDeserializer {
 
-    public static Element deserialize(XMLStreamReader2 reader) throws XMLStreamException {
+    /// @param projection 为 null 时保留完整的文档
+    public static Element deserialize(XMLStreamReader2 reader, XmlProjection projection) throws XMLStreamException {
         // 1, 循环直到找到第一个元素起始
         while (reader.getEventType() != START_ELEMENT) {
             reader.next();
         }
         // 2, 解析为 element 结构
-        var element = _deserializeElement(reader);
+        var rootProjection = XmlProjection.forRoot(projection, reader.getLocalName());
+        var element = rootProjection == null ? deserializeElement(reader) : _deserializeProjectedElement(reader, rootProjection);
         // 3, 验证是否存在后续多余内容
         while (reader.hasNext()) {
             // 非法内容 Woodstox 会为直接抛异常 无需我们处理
@@ -31,7 +34,8 @@ final class XmlDeserializer {
         return element;
     }
 
-    private static Element _deserializeElement(XMLStreamReader2 reader) throws XMLStreamException {
+    /// 从当前的 START_ELEMENT 开始读取, 直到与之对应的 END_ELEMENT 为止
+    static Element deserializeElement(XMLStreamReader2 reader) throws XMLStreamException {
         var stack = new TagElementStack();
         var root = new TagElement(reader.getLocalName(), reader.isEmptyElement());
         _deserializeAttribute(reader, root);
@@ -75,9 +79,60 @@ final class XmlDeserializer {
         return root;
     }
 
+    /// 只保留投影命中的子树. 命中元素的祖先元素只保留子元素, 属性和文本全部跳过.
+    /// 祖先元素在结束时才加入父元素, 没有命中任何后代时直接丢弃; 根元素没有命中任何后代时为自闭合的空元素
+    private static Element _deserializeProjectedElement(XMLStreamReader2 p, XmlProjection rootProjection) throws XMLStreamException {
+        var stack = new TagElementStack();
+        // 每一层的投影, 下标为 stack.size()
+        var projections = new XmlProjection[10];
+        var root = new TagElement(p.getLocalName(), p.isEmptyElement());
+        projections[0] = rootProjection;
+        var curr = root;
+
+        while (true) {
+            var t = p.next();
+            switch (t) {
+                case START_ELEMENT -> {
+                    var projection = projections[stack.size()].child(p.getLocalName());
+                    if (projection == null) {
+                        // 不在投影中, 跳过整个子树, 不会创建任何对象
+                        p.skipElement();
+                    } else if (projection.keepAll()) {
+                        curr.add(deserializeElement(p));
+                    } else {
+                        // 结束时才会加入父元素
+                        var newElement = new TagElement(p.getLocalName(), false);
+                        stack.push(curr);
+                        curr = newElement;
+                        if (stack.size() == projections.length) {
+                            projections = Arrays.copyOf(projections, stack.size() * 2);
+                        }
+                        projections[stack.size()] = projection;
+                    }
+                }
+                case END_ELEMENT -> {
+                    var ended = curr;
+                    curr = stack.popOrNull();
+                    // 根元素结束
+                    if (curr == null) {
+                        return root.size() != 0 ? root : new TagElement(root.tagName(), true);
+                    }
+                    if (ended.size() != 0) {
+                        curr.add(ended);
+                    }
+                }
+                default -> {
+                    // 忽略其他所有情况
+                }
+            }
+        }
+    }
+
     private static void _deserializeAttribute(XMLStreamReader2 p, TagElement tagElement) {
-        // 处理属性
-        for (int i = 0; i < p.getAttributeCount(); i++) {
+        // 处理属性, 数量已知 可以预先分配容量
+        var count = p.getAttributeCount();
+        tagElement.ensureAttributeCapacity(count);
+        for (int i = 0; i < count; i++) {
             var n = p.getAttributeLocalName(i);
             var v = p.getAttributeValue(i);
             tagElement.addAttribute(n, v);
@@ -85,8 +140,11 @@ final class XmlDeserializer {
     }
 
     private static TextElement _fromText(XMLStreamReader p) {
-        var text = p.getText();
-        return text.isBlank() ? null : new TextElement(text);
+        // 先在解析器的字符缓冲区上判断, 纯空白 (比如缩进) 无需创建 String
+        if (XmlChars.isBlank(p)) {
+            return null;
+        }
+        return new TextElement(p.getText());
     }
 
 }
@@ -1,21 +1,18 @@
 package dev.scx.format.xml;
 
-import com.ctc.wstx.stax.WstxInputFactory;
-import com.ctc.wstx.stax.WstxOutputFactory;
+import dev.scx.format.xml.element.CompactDocument;
 import dev.scx.format.xml.element.Element;
 
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-
-import static com.ctc.wstx.api.WstxInputProperties.*;
-import static dev.scx.format.xml.AutoCloseableXMLStreamReader.wrapReader;
-import static dev.scx.format.xml.AutoCloseableXMLStreamWriter.wrapWriter;
-import static dev.scx.format.xml.XmlDeserializer.deserialize;
+import java.util.stream.Stream;
 
 /// XmlElementConverter
 ///
+/// 每次调用都会根据 options 重新创建工厂 (包括其中的名称符号表), 高频调用时请使用 [#compile(XmlNodeConverterOptions)].
+///
 /// @author scx567888
 /// @version 0.0.1
 public final class XmlElementConverter {
@@ -24,106 +21,104 @@ public final class XmlElementConverter {
 
     }
 
-    private static WstxInputFactory createWstxInputFactory(XmlNodeConverterOptions options) {
-        // 这里我们使用 WstxInputFactory, 因为默认 XMLInputFactory 功能过于羸弱
-        var xmlInputFactory = new WstxInputFactory();
-        //有很多的 安全限制 Woodstox  已经覆盖了 我们直接使用
-        xmlInputFactory.setProperty(P_MAX_ELEMENT_DEPTH, options.maxNestingDepth());
-        xmlInputFactory.setProperty(P_MAX_TEXT_LENGTH, options.maxStringLength());
-        xmlInputFactory.setProperty(P_MAX_ATTRIBUTE_SIZE, options.maxStringLength());
-        xmlInputFactory.setProperty(P_MAX_CHILDREN_PER_ELEMENT, options.maxChildCount());
-        xmlInputFactory.setProperty(P_MAX_ATTRIBUTES_PER_ELEMENT, options.maxChildCount());
-        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-        return xmlInputFactory;
-    }
-
-    private static AutoCloseableXMLStreamReader createXMLStreamReader(Reader reader, XmlNodeConverterOptions options) throws XMLStreamException {
-        var xmlInputFactory = createWstxInputFactory(options);
-        return wrapReader(xmlInputFactory.createXMLStreamReader(reader));
+    /// 创建一个可复用且线程安全的 CompiledXmlElementConverter
+    public CompiledXmlElementConverter compile(XmlNodeConverterOptions options) {
+        return new CompiledXmlElementConverter(options);
     }
 
-    private static AutoCloseableXMLStreamReader createXMLStreamReader(InputStream inputStream, String enc, XmlNodeConverterOptions options) throws XMLStreamException {
-        var xmlInputFactory = createWstxInputFactory(options);
-        return wrapReader(xmlInputFactory.createXMLStreamReader(inputStream, enc));
+    public Element formatToElement(Reader reader, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).formatToElement(reader);
     }
 
-    private static AutoCloseableXMLStreamReader createXMLStreamReader(File file, XmlNodeConverterOptions options) throws XMLStreamException {
-        var xmlInputFactory = createWstxInputFactory(options);
-        return wrapReader(xmlInputFactory.createXMLStreamReader(file));
+    public Element formatToElement(InputStream inputStream, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).formatToElement(inputStream, charset);
     }
 
-    private static AutoCloseableXMLStreamWriter createXMLStreamWriter(Writer writer, XmlNodeConverterOptions options) throws XMLStreamException {
-        var xmlOutputFactory = new WstxOutputFactory();
-        return wrapWriter(xmlOutputFactory.createXMLStreamWriter(writer));
+    public Element formatToElement(String text, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
+        return compile(options).formatToElement(text);
     }
 
-    private static AutoCloseableXMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String enc, XmlNodeConverterOptions options) throws XMLStreamException {
-        var xmlOutputFactory = new WstxOutputFactory();
-        return wrapWriter(xmlOutputFactory.createXMLStreamWriter(outputStream, enc));
+    public Element formatToElement(byte[] bytes, Charset charset, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
+        return compile(options).formatToElement(bytes, charset);
     }
 
-    public Element formatToElement(Reader reader, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var xmlStreamReader = createXMLStreamReader(reader, options)) {
-            return deserialize(xmlStreamReader.reader());
-        }
+    public Element formatToElement(ByteBuffer buffer, Charset charset, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
+        return compile(options).formatToElement(buffer, charset);
     }
 
-    public Element formatToElement(InputStream inputStream, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var xmlStreamReader = createXMLStreamReader(inputStream, charset.name(), options)) {
-            return deserialize(xmlStreamReader.reader());
-        }
+    public Element formatToElement(File file, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).formatToElement(file, charset);
     }
 
-    public Element formatToElement(String text, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
-        try (var reader = new StringReader(text)) {
-            return formatToElement(reader, options);
-        }
+    /// 流式查询, 详见 [CompiledXmlElementConverter#query(Reader, XmlQuery)]
+    public Stream<Element> query(Reader reader, XmlQuery query, XmlNodeConverterOptions options) throws XMLStreamException {
+        return compile(options).query(reader, query);
     }
 
-    public Element formatToElement(byte[] bytes, Charset charset, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
-        try (var inputStream = new ByteArrayInputStream(bytes)) {
-            return formatToElement(inputStream, charset, options);
-        }
+    /// 流式查询, 详见 [CompiledXmlElementConverter#query(InputStream, Charset, XmlQuery)]
+    public Stream<Element> query(InputStream inputStream, Charset charset, XmlQuery query, XmlNodeConverterOptions options) throws XMLStreamException {
+        return compile(options).query(inputStream, charset, query);
     }
 
-    public Element formatToElement(File file, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var xmlStreamReader = createXMLStreamReader(file, options)) {
-            return deserialize(xmlStreamReader.reader());
-        }
+    /// 创建一个非阻塞的增量解析器, 详见 [XmlAsyncParser]
+    public XmlAsyncParser createAsyncParser(XmlNodeConverterOptions options) {
+        return compile(options).createAsyncParser();
     }
 
     public void elementToFormat(Element element, Writer writer, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var xmlStreamWriter = createXMLStreamWriter(writer, options)) {
-            new XmlSerializer(options).serialize(xmlStreamWriter.writer(), element);
-        }
+        compile(options).elementToFormat(element, writer);
     }
 
     public void elementToFormat(Element element, OutputStream outputStream, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var xmlStreamWriter = createXMLStreamWriter(outputStream, charset.name(), options)) {
-            new XmlSerializer(options).serialize(xmlStreamWriter.writer(), element);
-        }
+        compile(options).elementToFormat(element, outputStream, charset);
     }
 
     public String elementToFormatString(Element element, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var writer = new StringWriter()) {
-            elementToFormat(element, writer, options);
-            return writer.toString();
-        }
+        return compile(options).elementToFormatString(element);
     }
 
     public byte[] elementToFormatBytes(Element element, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var outputStream = new ByteArrayOutputStream()) {
-            elementToFormat(element, outputStream, charset, options);
-            return outputStream.toByteArray();
-        }
+        return compile(options).elementToFormatBytes(element, charset);
     }
 
     public File elementToFormatFile(Element element, File file, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
-        try (var outputStream = new FileOutputStream(file)) {
-            elementToFormat(element, outputStream, charset, options);
-            return file;
-        }
+        return compile(options).elementToFormatFile(element, file, charset);
+    }
+
+    public CompactDocument formatToCompactDocument(Reader reader, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).formatToCompactDocument(reader);
+    }
+
+    public CompactDocument formatToCompactDocument(InputStream inputStream, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).formatToCompactDocument(inputStream, charset);
+    }
+
+    public CompactDocument formatToCompactDocument(String text, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
+        return compile(options).formatToCompactDocument(text);
+    }
+
+    public CompactDocument formatToCompactDocument(byte[] bytes, Charset charset, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
+        return compile(options).formatToCompactDocument(bytes, charset);
+    }
+
+    public CompactDocument formatToCompactDocument(File file, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).formatToCompactDocument(file, charset);
+    }
+
+    public void compactDocumentToFormat(CompactDocument document, Writer writer, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        compile(options).compactDocumentToFormat(document, writer);
+    }
+
+    public void compactDocumentToFormat(CompactDocument document, OutputStream outputStream, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        compile(options).compactDocumentToFormat(document, outputStream, charset);
+    }
+
+    public String compactDocumentToFormatString(CompactDocument document, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).compactDocumentToFormatString(document);
+    }
+
+    public byte[] compactDocumentToFormatBytes(CompactDocument document, Charset charset, XmlNodeConverterOptions options) throws IOException, XMLStreamException {
+        return compile(options).compactDocumentToFormatBytes(document, charset);
     }
 
 }
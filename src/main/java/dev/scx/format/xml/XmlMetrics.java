@@ -0,0 +1,29 @@
+package dev.scx.format.xml;
+
+/// 一次转换的统计信息, 详见 [XmlMetricsListener]
+///
+/// @param bytesIn        读取的字节数, 输入为字符 (Reader, String) 或不读取 XML 时为 -1
+/// @param bytesOut       写出的字节数, 输出为字符 (Writer, String) 或不写出 XML 时为 -1
+/// @param elementCount   元素数量, 无法统计时 (并行解析) 为 -1, 下同
+/// @param attributeCount 属性数量
+/// @param textCount      文本数量 (不包括纯空白的文本)
+/// @param maxDepth       到达的最大元素深度, 根元素为 1
+/// @param parseNanos     解析阶段耗时
+/// @param convertNanos   Element 与 Node 之间转换的耗时
+/// @param serializeNanos 写出阶段耗时
+/// @param success        是否成功完成, 失败时统计信息只包括失败之前的部分
+/// @author scx567888
+/// @version 0.0.1
+public record XmlMetrics(XmlOperation operation,
+                         long bytesIn,
+                         long bytesOut,
+                         long elementCount,
+                         long attributeCount,
+                         long textCount,
+                         int maxDepth,
+                         long parseNanos,
+                         long convertNanos,
+                         long serializeNanos,
+                         boolean success) {
+
+}
@@ -0,0 +1,25 @@
+package dev.scx.format.xml;
+
+/// 接收每次转换的统计信息, 可以桥接到外部的监控系统.
+///
+/// 通过 [XmlNodeConverterOptions#metricsListener(XmlMetricsListener)] 配置.
+/// 同样的信息也会以 JDK Flight Recorder 事件 `dev.scx.format.xml.XmlConversion` 发出.
+/// 既没有配置 listener 也没有开启对应的 JFR 事件时, 不会进行任何统计.
+///
+/// 回调在执行转换的线程上同步调用, 所以实现需要线程安全且足够快, 回调抛出的异常会传递给转换的调用方.
+///
+/// 所有公开的转换方法都会被统计, 以下情况需要注意:
+///
+/// - query 和 streamRecords 返回的 Stream 在读取完毕或被关闭时回调, 耗时包括调用方处理每个结果的时间, 提前关闭时 success 为 false.
+/// - XmlRecordWriter 在 close 时回调, 耗时同样包括两次 write 之间的时间.
+/// - XmlAsyncParser 在 endOfInput 或 close 时回调, 耗时只包括 feed 和 endOfInput 内部, 不包括等待数据的时间.
+/// - formatToNodeParallel 和 streamRecordsParallel 并行解析时无法统计元素数量等信息, 记为 -1. formatToNodeParallel 回退到顺序解析时只回调顺序解析的统计.
+///
+/// @author scx567888
+/// @version 0.0.1
+@FunctionalInterface
+public interface XmlMetricsListener {
+
+    void onMetrics(XmlMetrics metrics);
+
+}
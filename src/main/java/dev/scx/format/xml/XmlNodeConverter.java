@@ -5,12 +5,16 @@ import dev.scx.format.FormatToNodeException;
 import dev.scx.format.NodeToFormatException;
 import dev.scx.node.Node;
 
-import javax.xml.stream.XMLStreamException;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.stream.Stream;
 
 /// XmlNodeConverter
 ///
+/// 每次调用都会根据 options 重新创建工厂 (包括其中的名称符号表), 高频调用时请使用 [#compile(XmlNodeConverterOptions)].
+///
 /// @author scx567888
 /// @version 0.0.1
 public final class XmlNodeConverter implements FormatNodeConverter<XmlNodeConverterOptions> {
@@ -21,104 +25,124 @@ public final class XmlNodeConverter implements FormatNodeConverter<XmlNodeConver
         this.xmlElementConverter = new XmlElementConverter();
     }
 
+    /// 创建一个可复用且线程安全的 CompiledXmlNodeConverter
+    public CompiledXmlNodeConverter compile(XmlNodeConverterOptions options) {
+        return new CompiledXmlNodeConverter(options);
+    }
+
     @Override
     public Node formatToNode(Reader reader, XmlNodeConverterOptions options) throws FormatToNodeException, IOException {
-        try {
-            var element = xmlElementConverter.formatToElement(reader, options);
-            return new ElementNodeConverter(options).elementToNode(element);
-        } catch (XMLStreamException e) {
-            throw new FormatToNodeException(e);
-        }
+        return compile(options).formatToNode(reader);
     }
 
     @Override
     public Node formatToNode(InputStream inputStream, Charset charset, XmlNodeConverterOptions options) throws FormatToNodeException, IOException {
-        try {
-            var element = xmlElementConverter.formatToElement(inputStream, charset, options);
-            return new ElementNodeConverter(options).elementToNode(element);
-        } catch (XMLStreamException e) {
-            throw new FormatToNodeException(e);
-        }
+        return compile(options).formatToNode(inputStream, charset);
     }
 
     @Override
     public Node formatToNode(String text, XmlNodeConverterOptions options) throws FormatToNodeException {
-        try {
-            var element = xmlElementConverter.formatToElement(text, options);
-            return new ElementNodeConverter(options).elementToNode(element);
-        } catch (XMLStreamException | IOException e) {
-            throw new FormatToNodeException(e);
-        }
+        return compile(options).formatToNode(text);
     }
 
     @Override
     public Node formatToNode(byte[] bytes, Charset charset, XmlNodeConverterOptions options) throws FormatToNodeException {
-        try {
-            var element = xmlElementConverter.formatToElement(bytes, charset, options);
-            return new ElementNodeConverter(options).elementToNode(element);
-        } catch (XMLStreamException | IOException e) {
-            throw new FormatToNodeException(e);
-        }
+        return compile(options).formatToNode(bytes, charset);
     }
 
     @Override
     public Node formatToNode(File file, Charset charset, XmlNodeConverterOptions options) throws FormatToNodeException, IOException {
-        try {
-            var element = xmlElementConverter.formatToElement(file, charset, options);
-            return new ElementNodeConverter(options).elementToNode(element);
-        } catch (XMLStreamException e) {
-            throw new FormatToNodeException(e);
-        }
+        return compile(options).formatToNode(file, charset);
+    }
+
+    /// 详见 [CompiledXmlNodeConverter#formatToNode(ByteBuffer, Charset)]
+    public Node formatToNode(ByteBuffer buffer, Charset charset, XmlNodeConverterOptions options) throws FormatToNodeException {
+        return compile(options).formatToNode(buffer, charset);
+    }
+
+    /// 并行分块解析, 详见 [CompiledXmlNodeConverter#formatToNodeParallel(File, Charset)]
+    public Node formatToNodeParallel(File file, Charset charset, XmlNodeConverterOptions options) throws FormatToNodeException, IOException {
+        return compile(options).formatToNodeParallel(file, charset);
+    }
+
+    /// 批量转换, 所有条目共享同一份预编译的配置, 详见 [CompiledXmlNodeConverter#formatToNodeAll(List, Charset)]
+    public List<XmlBatchResult<Node>> formatToNodeAll(List<byte[]> inputs, Charset charset, XmlNodeConverterOptions options) {
+        return compile(options).formatToNodeAll(inputs, charset);
+    }
+
+    /// 批量转换, 详见 [CompiledXmlNodeConverter#formatToNodeAll(Stream, Charset)]
+    public List<XmlBatchResult<Node>> formatToNodeAll(Stream<? extends InputStream> inputs, Charset charset, XmlNodeConverterOptions options) {
+        return compile(options).formatToNodeAll(inputs, charset);
+    }
+
+    /// 逐条读取记录, 详见 [CompiledXmlNodeConverter#streamRecords(Reader, String)]
+    public Stream<Node> streamRecords(Reader reader, String recordPath, XmlNodeConverterOptions options) throws FormatToNodeException {
+        return compile(options).streamRecords(reader, recordPath);
+    }
+
+    /// 逐条读取记录, 详见 [CompiledXmlNodeConverter#streamRecords(InputStream, Charset, String)]
+    public Stream<Node> streamRecords(InputStream inputStream, Charset charset, String recordPath, XmlNodeConverterOptions options) throws FormatToNodeException {
+        return compile(options).streamRecords(inputStream, charset, recordPath);
+    }
+
+    /// 并行分块读取记录, 详见 [CompiledXmlNodeConverter#streamRecordsParallel(File, Charset, String)]
+    public Stream<Node> streamRecordsParallel(File file, Charset charset, String recordPath, XmlNodeConverterOptions options) throws FormatToNodeException, IOException {
+        return compile(options).streamRecordsParallel(file, charset, recordPath);
+    }
+
+    /// 流式查询, 详见 [CompiledXmlNodeConverter#query(Reader, XmlQuery)]
+    public Stream<Node> query(Reader reader, XmlQuery query, XmlNodeConverterOptions options) throws FormatToNodeException {
+        return compile(options).query(reader, query);
+    }
+
+    /// 流式查询, 详见 [CompiledXmlNodeConverter#query(InputStream, Charset, XmlQuery)]
+    public Stream<Node> query(InputStream inputStream, Charset charset, XmlQuery query, XmlNodeConverterOptions options) throws FormatToNodeException {
+        return compile(options).query(inputStream, charset, query);
+    }
+
+    /// 创建一个非阻塞的增量解析器, 详见 [XmlAsyncParser]
+    public XmlAsyncParser createAsyncParser(XmlNodeConverterOptions options) {
+        return compile(options).createAsyncParser();
     }
 
     @Override
     public void nodeToFormat(Node node, Writer writer, XmlNodeConverterOptions options) throws NodeToFormatException, IOException {
-        try {
-            var element = new ElementNodeConverter(options).nodeToElement(node);
-            xmlElementConverter.elementToFormat(element, writer, options);
-        } catch (XMLStreamException e) {
-            throw new NodeToFormatException(e);
-        }
+        compile(options).nodeToFormat(node, writer);
     }
 
     @Override
     public void nodeToFormat(Node node, OutputStream outputStream, Charset charset, XmlNodeConverterOptions options) throws NodeToFormatException, IOException {
-        try {
-            var element = new ElementNodeConverter(options).nodeToElement(node);
-            xmlElementConverter.elementToFormat(element, outputStream, charset, options);
-        } catch (XMLStreamException e) {
-            throw new NodeToFormatException(e);
-        }
+        compile(options).nodeToFormat(node, outputStream, charset);
     }
 
     @Override
     public String nodeToFormatString(Node node, XmlNodeConverterOptions options) throws NodeToFormatException {
-        try {
-            var element = new ElementNodeConverter(options).nodeToElement(node);
-            return xmlElementConverter.elementToFormatString(element, options);
-        } catch (XMLStreamException | IOException e) {
-            throw new NodeToFormatException(e);
-        }
+        return compile(options).nodeToFormatString(node);
     }
 
     @Override
     public byte[] nodeToFormatBytes(Node node, Charset charset, XmlNodeConverterOptions options) throws NodeToFormatException {
-        try {
-            var element = new ElementNodeConverter(options).nodeToElement(node);
-            return xmlElementConverter.elementToFormatBytes(element, charset, options);
-        } catch (XMLStreamException | IOException e) {
-            throw new NodeToFormatException(e);
-        }
+        return compile(options).nodeToFormatBytes(node, charset);
+    }
+
+    /// 批量转换, 详见 [CompiledXmlNodeConverter#nodeToFormatAll(List, Charset)]
+    public List<XmlBatchResult<byte[]>> nodeToFormatAll(List<? extends Node> nodes, Charset charset, XmlNodeConverterOptions options) {
+        return compile(options).nodeToFormatAll(nodes, charset);
     }
 
     @Override
     public File nodeToFormatFile(Node node, File file, Charset charset, XmlNodeConverterOptions options) throws NodeToFormatException, IOException {
-        try {
-            var element = new ElementNodeConverter(options).nodeToElement(node);
-            return xmlElementConverter.elementToFormatFile(element, file, charset, options);
-        } catch (XMLStreamException e) {
-            throw new NodeToFormatException(e);
-        }
+        return compile(options).nodeToFormatFile(node, file, charset);
+    }
+
+    /// 逐条写出记录, 详见 [XmlRecordWriter]
+    public XmlRecordWriter openRecordWriter(Writer writer, XmlNodeConverterOptions options) throws NodeToFormatException {
+        return compile(options).openRecordWriter(writer);
+    }
+
+    /// 逐条写出记录, 详见 [XmlRecordWriter]
+    public XmlRecordWriter openRecordWriter(OutputStream outputStream, Charset charset, XmlNodeConverterOptions options) throws NodeToFormatException {
+        return compile(options).openRecordWriter(outputStream, charset);
     }
 
     public XmlElementConverter xmlElementConverter() {
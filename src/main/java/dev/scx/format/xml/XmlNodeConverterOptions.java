@@ -2,6 +2,8 @@ package dev.scx.format.xml;
 
 import dev.scx.format.FormatNodeConvertOptions;
 
+import java.util.List;
+
 /// XmlNodeConverterOptions
 ///
 /// @author scx567888
@@ -18,13 +20,65 @@ public class XmlNodeConverterOptions implements FormatNodeConvertOptions {
     private String rootName;
     /// 匿名元素 名称
     private String itemName;
+    /// 读取文件时 使用 MappedByteBuffer 窗口 (适合非常大的文件)
+    private boolean mappedFileInput;
+    /// 写出文件时 使用 FileChannel 和直接内存缓冲区 (适合非常大的文件)
+    private boolean channelFileOutput;
+    /// MappedByteBuffer 窗口 和 直接内存缓冲区 的大小
+    private int fileBufferSize;
+    /// 写出 XML 时使用的实现
+    private XmlWriterBackend writerBackend;
+    /// 由解析器合并相邻的文本 (包括 CDATA), 每段文本只产生一个事件
+    private boolean coalescing;
+    /// 解析时只保留这些路径命中的子树 (为空时保留全部), 比如 `/root/user/id`, `/root/posts/*/title`
+    private List<String> projection;
+    /// ElementNodeConverter.elementToNode 中子元素数量达到此值的元素 会使用 fork/join 并行转换其子元素, 0 表示关闭
+    private int parallelThreshold;
+    /// 并行分块解析文件时 每一块的目标字节数
+    private int parallelChunkSize;
+    /// 批量转换时 同一时间最多执行的条目数量
+    private int batchConcurrency;
+    /// 转换过程中由我们自己分配的缓冲区所使用的池, 详见 [#bufferPool()]
+    private XmlBufferPool bufferPool;
+    /// 接收每次转换的统计信息, 为 null 时不回调
+    private XmlMetricsListener metricsListener;
 
     public XmlNodeConverterOptions() {
-        this.maxNestingDepth = 200; // 默认 200 既不会轻易栈溢出, 也足够 99.99% 的情况
+        this.maxNestingDepth = 200; // 默认 200 足够 99.99% 的情况, 所有转换均为非递归实现, 此限制仅作为安全策略
         this.maxChildCount = 5000;
         this.maxStringLength = 2000 * 10000;
         this.rootName = "root";
         this.itemName = "item";
+        this.mappedFileInput = false;
+        this.channelFileOutput = false;
+        this.fileBufferSize = 8 * 1024 * 1024;
+        this.writerBackend = XmlWriterBackend.STAX;
+        this.coalescing = false; // 默认关闭以保持原有行为 (CDATA 会被忽略, 很长的文本可能被拆分为多段)
+        this.projection = List.of();
+        this.parallelThreshold = 0; // 默认关闭, 只有子树较重且数量较多时并行才有收益
+        this.parallelChunkSize = 16 * 1024 * 1024;
+        this.batchConcurrency = Runtime.getRuntime().availableProcessors(); // 转换是 CPU 密集的, 输入来自慢速 IO 时可以适当调大
+        this.bufferPool = XmlBufferPool.shared();
+        this.metricsListener = null; // 默认关闭, 此时只有开启了对应的 JFR 事件才会统计
+    }
+
+    public XmlNodeConverterOptions(XmlNodeConverterOptions old) {
+        this.maxNestingDepth = old.maxNestingDepth;
+        this.maxChildCount = old.maxChildCount;
+        this.maxStringLength = old.maxStringLength;
+        this.rootName = old.rootName;
+        this.itemName = old.itemName;
+        this.mappedFileInput = old.mappedFileInput;
+        this.channelFileOutput = old.channelFileOutput;
+        this.fileBufferSize = old.fileBufferSize;
+        this.writerBackend = old.writerBackend;
+        this.coalescing = old.coalescing;
+        this.projection = old.projection;
+        this.parallelThreshold = old.parallelThreshold;
+        this.parallelChunkSize = old.parallelChunkSize;
+        this.batchConcurrency = old.batchConcurrency;
+        this.bufferPool = old.bufferPool;
+        this.metricsListener = old.metricsListener;
     }
 
     public int maxNestingDepth() {
@@ -87,4 +141,139 @@ public class XmlNodeConverterOptions implements FormatNodeConvertOptions {
         return this;
     }
 
+    public boolean mappedFileInput() {
+        return mappedFileInput;
+    }
+
+    public XmlNodeConverterOptions mappedFileInput(boolean mappedFileInput) {
+        this.mappedFileInput = mappedFileInput;
+        return this;
+    }
+
+    public boolean channelFileOutput() {
+        return channelFileOutput;
+    }
+
+    public XmlNodeConverterOptions channelFileOutput(boolean channelFileOutput) {
+        this.channelFileOutput = channelFileOutput;
+        return this;
+    }
+
+    public int fileBufferSize() {
+        return fileBufferSize;
+    }
+
+    public XmlNodeConverterOptions fileBufferSize(int fileBufferSize) {
+        if (fileBufferSize <= 0) {
+            throw new IllegalArgumentException("fileBufferSize must > 0");
+        }
+        this.fileBufferSize = fileBufferSize;
+        return this;
+    }
+
+    public XmlWriterBackend writerBackend() {
+        return writerBackend;
+    }
+
+    public XmlNodeConverterOptions writerBackend(XmlWriterBackend writerBackend) {
+        if (writerBackend == null) {
+            throw new NullPointerException("writerBackend cannot be null");
+        }
+        this.writerBackend = writerBackend;
+        return this;
+    }
+
+    public boolean coalescing() {
+        return coalescing;
+    }
+
+    public XmlNodeConverterOptions coalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+    public List<String> projection() {
+        return projection;
+    }
+
+    /// 只作用于解析完整文档 (formatToNode, formatToElement, formatToCompactDocument),
+    /// 不作用于逐条读取记录和异步解析
+    public XmlNodeConverterOptions projection(String... projection) {
+        for (var path : projection) {
+            XmlProjection.parsePath(path);
+        }
+        this.projection = List.of(projection);
+        return this;
+    }
+
+    public int parallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public XmlNodeConverterOptions parallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("parallelThreshold cannot < 0");
+        }
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    public int parallelChunkSize() {
+        return parallelChunkSize;
+    }
+
+    public XmlNodeConverterOptions parallelChunkSize(int parallelChunkSize) {
+        if (parallelChunkSize <= 0) {
+            throw new IllegalArgumentException("parallelChunkSize must > 0");
+        }
+        this.parallelChunkSize = parallelChunkSize;
+        return this;
+    }
+
+    public int batchConcurrency() {
+        return batchConcurrency;
+    }
+
+    public XmlNodeConverterOptions batchConcurrency(int batchConcurrency) {
+        if (batchConcurrency <= 0) {
+            throw new IllegalArgumentException("batchConcurrency must > 0");
+        }
+        this.batchConcurrency = batchConcurrency;
+        return this;
+    }
+
+    /// 使用缓冲区池的位置 (默认配置下同样生效):
+    ///
+    /// - 从 InputStream 或 File (未开启 mappedFileInput) 解析时, 读取输入的 byte[]. 不超过 16 KB 的输入直接在这个数组上解析
+    /// - 写出为 byte[] (xxxToFormatBytes) 时, 替代 ByteArrayOutputStream 的 byte[]
+    /// - [XmlWriterBackend#FAST] 的输出缓冲区 和 channelFileOutput 的直接内存缓冲区
+    ///
+    /// 不使用缓冲区池的位置:
+    ///
+    /// - Woodstox 自身的解析和写出缓冲区 (比如 STAX 写出到 OutputStream, Writer 或 File 时), 没有对外的扩展点
+    /// - Reader, Writer 和 String 的输入输出, 池中只有 byte[]
+    /// - 直接传入的 byte[] 和 ByteBuffer 无需复制, 直接解析
+    /// - query, streamRecords 和异步解析, reader 的生命周期由调用方决定, 不适合长时间占用池中的数组
+    public XmlBufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    public XmlNodeConverterOptions bufferPool(XmlBufferPool bufferPool) {
+        if (bufferPool == null) {
+            throw new NullPointerException("bufferPool cannot be null");
+        }
+        this.bufferPool = bufferPool;
+        return this;
+    }
+
+    public XmlMetricsListener metricsListener() {
+        return metricsListener;
+    }
+
+    /// 详见 [XmlMetricsListener], 传入 null 表示关闭
+    public XmlNodeConverterOptions metricsListener(XmlMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
 }
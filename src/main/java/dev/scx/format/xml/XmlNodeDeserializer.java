@@ -0,0 +1,233 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.FormatToNodeException;
+import dev.scx.node.*;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.Arrays;
+
+import static dev.scx.format.xml.ElementNodeConverter.putOrAppend;
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/// 直接从 XMLStreamReader2 构建 Node, 不生成中间的 Element 树.
+///
+/// 转换规则与 [ElementNodeConverter#elementToNode(dev.scx.format.xml.element.Element)] 完全一致,
+/// 只是在事件到达时即时应用, 所以同一时间只会存在一份对象图.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlNodeDeserializer {
+
+    /// @param projection 为 null 时保留完整的文档
+    public static Node deserialize(XMLStreamReader2 reader, XmlProjection projection) throws XMLStreamException {
+        // 1, 循环直到找到第一个元素起始
+        while (reader.getEventType() != START_ELEMENT) {
+            reader.next();
+        }
+        // 2, 解析为 node 结构
+        var rootProjection = XmlProjection.forRoot(projection, reader.getLocalName());
+        var node = rootProjection == null ? deserializeElement(reader) : _deserializeProjectedElement(reader, rootProjection);
+        // 3, 验证是否存在后续多余内容
+        while (reader.hasNext()) {
+            // 非法内容 Woodstox 会为直接抛异常 无需我们处理
+            reader.next();
+        }
+        return node;
+    }
+
+    /// 从当前的 START_ELEMENT 开始读取, 直到与之对应的 END_ELEMENT 为止
+    static Node deserializeElement(XMLStreamReader2 p) throws XMLStreamException {
+        // 子元素数量限制已由 Woodstox 处理
+        return deserializeElement(p, Integer.MAX_VALUE);
+    }
+
+    /// 同上, 但额外由我们自己校验每个元素的子元素数量.
+    /// 用于 Woodstox 的子元素数量限制被关闭的场景 (比如逐条读取记录时, 记录的父元素会有非常多的子元素)
+    static Node deserializeElement(XMLStreamReader2 p, int maxChildCount) throws XMLStreamException {
+        var stack = new FrameStack();
+        var curr = stack.push(p.getLocalName(), p.isEmptyElement());
+        _deserializeAttribute(p, curr);
+
+        while (true) {
+            var t = p.next();
+            switch (t) {
+                case START_ELEMENT -> {
+                    curr.childCount++;
+                    if (curr.childCount > maxChildCount) {
+                        throw new FormatToNodeException("Child count exceeds limit: " + maxChildCount);
+                    }
+                    curr = stack.push(p.getLocalName(), p.isEmptyElement());
+                    _deserializeAttribute(p, curr);
+                }
+                case END_ELEMENT -> {
+                    var name = curr.name;
+                    var node = curr.toNode();
+                    curr = stack.pop();
+                    // 根元素结束
+                    if (curr == null) {
+                        return node;
+                    }
+                    curr.addElement(name, node);
+                }
+                case CHARACTERS -> _fromText(p, curr);
+                default -> {
+                    // 忽略其他所有情况
+                }
+            }
+        }
+    }
+
+    /// 只保留投影命中的子树. 这里的 Frame 都是可能的祖先元素, 只保留子元素, 属性和文本全部跳过.
+    /// 只在结束时存在命中的子元素才会加入父元素, 所以 `*` 匹配到但没有命中任何后代的元素不会保留
+    private static Node _deserializeProjectedElement(XMLStreamReader2 p, XmlProjection rootProjection) throws XMLStreamException {
+        var stack = new FrameStack();
+        var curr = stack.push(p.getLocalName(), p.isEmptyElement());
+        curr.projection = rootProjection;
+
+        while (true) {
+            var t = p.next();
+            switch (t) {
+                case START_ELEMENT -> {
+                    var name = p.getLocalName();
+                    var projection = curr.projection.child(name);
+                    if (projection == null) {
+                        // 不在投影中, 跳过整个子树, 不会创建任何对象
+                        p.skipElement();
+                    } else if (projection.keepAll()) {
+                        curr.addElement(name, deserializeElement(p));
+                    } else {
+                        curr = stack.push(name, p.isEmptyElement());
+                        curr.projection = projection;
+                    }
+                }
+                case END_ELEMENT -> {
+                    var name = curr.name;
+                    // 投影中的 Frame 只会有子元素, 没有子元素即没有命中任何后代
+                    var node = curr.elements != null ? curr.toNode() : null;
+                    curr = stack.pop();
+                    // 根元素结束, 没有命中任何路径时为 NULL
+                    if (curr == null) {
+                        return node != null ? node : NullNode.NULL;
+                    }
+                    if (node != null) {
+                        curr.addElement(name, node);
+                    }
+                }
+                default -> {
+                    // 忽略其他所有情况
+                }
+            }
+        }
+    }
+
+    private static void _deserializeAttribute(XMLStreamReader2 p, Frame frame) {
+        // 处理属性
+        for (int i = 0; i < p.getAttributeCount(); i++) {
+            var n = p.getAttributeLocalName(i);
+            var v = p.getAttributeValue(i);
+            frame.addElement(n, new StringNode(v));
+        }
+    }
+
+    private static void _fromText(XMLStreamReader2 p, Frame frame) {
+        // 先在解析器的字符缓冲区上判断, 纯空白 (比如缩进) 无需创建 String
+        if (!XmlChars.isBlank(p)) {
+            frame.addText(new StringNode(p.getText()));
+        }
+    }
+
+    /// 一个尚未结束的元素, 子元素和文本都是按需创建的
+    private static final class Frame {
+
+        private String name;
+        private boolean selfClosing;
+        private int childCount;
+        private ObjectNode elements;
+        private StringNode text;
+        private ArrayNode texts;
+        // 只在投影解析时使用
+        private XmlProjection projection;
+
+        private void reset(String name, boolean selfClosing) {
+            this.name = name;
+            this.selfClosing = selfClosing;
+            this.childCount = 0;
+            this.elements = null;
+            this.text = null;
+            this.texts = null;
+            this.projection = null;
+        }
+
+        private void addElement(String name, Node node) {
+            if (elements == null) {
+                elements = new ObjectNode();
+            }
+            putOrAppend(elements, name, node);
+        }
+
+        private void addText(StringNode node) {
+            if (text == null) {
+                text = node;
+                return;
+            }
+            if (texts == null) {
+                texts = new ArrayNode();
+                texts.add(text);
+            }
+            texts.add(node);
+        }
+
+        private Node toNode() {
+            // 自闭合标签 没有内部元素
+            if (selfClosing) {
+                return elements == null ? NullNode.NULL : elements;
+            }
+            // 没有任何子元素
+            if (elements == null) {
+                if (text == null) {
+                    return new StringNode("");
+                }
+                return texts == null ? text : texts;
+            }
+            // 同时存在子元素和文本, 以 "" 为 key 合并
+            if (texts != null) {
+                elements.put("", texts);
+            } else if (text != null) {
+                elements.put("", text);
+            }
+            return elements;
+        }
+
+    }
+
+    /// Frame 栈, 出栈的 Frame 会被复用
+    private static final class FrameStack {
+
+        private Frame[] _stack = new Frame[10];
+        private int _top;
+
+        private Frame push(String name, boolean selfClosing) {
+            if (_top == _stack.length) {
+                // grow by 50%, for most part
+                _stack = Arrays.copyOf(_stack, _top + Math.min(4000, Math.max(20, _top >> 1)));
+            }
+            var frame = _stack[_top];
+            if (frame == null) {
+                frame = new Frame();
+                _stack[_top] = frame;
+            }
+            _top++;
+            frame.reset(name, selfClosing);
+            return frame;
+        }
+
+        /// 弹出当前 Frame, 并返回新的栈顶, 栈为空时返回 null
+        private Frame pop() {
+            _top--;
+            return _top == 0 ? null : _stack[_top - 1];
+        }
+
+    }
+
+}
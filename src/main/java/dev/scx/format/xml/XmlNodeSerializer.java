@@ -0,0 +1,137 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.NodeToFormatException;
+import dev.scx.node.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.Iterator;
+import java.util.Map;
+
+/// 直接将 Node 写入 XmlWriter, 不生成中间的 TagElement 树.
+///
+/// 转换规则与 [ElementNodeConverter#nodeToElement(Node)] 完全一致,
+/// 输出 (包括嵌套深度的校验) 与 先 nodeToElement 再 [XmlSerializer] 的结果逐字节相同.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlNodeSerializer {
+
+    private final int maxNestingDepth;
+    private final String rootName;
+    private final String itemName;
+
+    public XmlNodeSerializer(XmlNodeConverterOptions options) {
+        this.maxNestingDepth = options.maxNestingDepth();
+        this.rootName = options.rootName();
+        this.itemName = options.itemName();
+    }
+
+    public void serialize(XmlWriter writer, Node node) throws XMLStreamException, NodeToFormatException {
+        // rootName 为 "" 时, 顶级值会被解包成独立的文本, 和 XmlSerializer 一样我们需要再包裹一层
+        if (rootName.isEmpty() && !(node instanceof NullNode) && node instanceof ValueNode valueNode) {
+            _checkDepth(1);
+            writer.writeStartElement(rootName);
+            _writeText(writer, valueNode, 2);
+            writer.writeEndElement();
+            return;
+        }
+        // 顶级数组需要特殊处理
+        var isRootArray = node instanceof ArrayNode;
+        _serialize(writer, node, rootName, isRootArray, 1);
+    }
+
+    /// 逐条写出记录时使用, 写出根元素的开始标签
+    public void serializeRecordsStart(XmlWriter writer) throws XMLStreamException, NodeToFormatException {
+        _checkDepth(1);
+        writer.writeStartElement(rootName);
+    }
+
+    /// 逐条写出记录时使用, 每条记录都视为顶级数组中的一项
+    public void serializeRecord(XmlWriter writer, Node node) throws XMLStreamException, NodeToFormatException {
+        _serialize(writer, node, itemName, true, 2);
+    }
+
+    /// 逐条写出记录时使用, 写出根元素的结束标签
+    public void serializeRecordsEnd(XmlWriter writer) throws XMLStreamException {
+        writer.writeEndElement();
+    }
+
+    /// 非递归实现, 嵌套深度只受 maxNestingDepth 限制, 不受线程栈大小限制
+    private void _serialize(XmlWriter writer, Node node, String key, boolean inArray, int currentDepth) throws XMLStreamException, NodeToFormatException {
+        var curr = _writeStart(writer, null, node, key, inArray, currentDepth);
+
+        while (curr != null) {
+            if (!curr.hasNext()) {
+                writer.writeEndElement();
+                curr = curr.parent;
+                continue;
+            }
+            // 对象使用 entry 的 key, 数组使用上文 key 或 itemName
+            Frame childFrame;
+            if (curr.objectIterator != null) {
+                var e = curr.objectIterator.next();
+                childFrame = _writeStart(writer, curr, e.getValue(), e.getKey(), false, curr.depth + 1);
+            } else {
+                var e = curr.arrayIterator.next();
+                childFrame = _writeStart(writer, curr, e, curr.itemKey, true, curr.depth + 1);
+            }
+            if (childFrame != null) {
+                curr = childFrame;
+            }
+        }
+    }
+
+    /// 写出 node 的开始部分, 如果还需要继续写出内部元素则返回对应的 Frame, 否则返回 null
+    private Frame _writeStart(XmlWriter writer, Frame parent, Node node, String key, boolean inArray, int currentDepth) throws XMLStreamException, NodeToFormatException {
+        _checkDepth(currentDepth);
+        switch (node) {
+            case NullNode _ -> {
+                // null 直接使用自闭合标签
+                writer.writeEmptyElement(key);
+                return null;
+            }
+            case ValueNode valueNode -> {
+                // "", 直接解包
+                if (key.isEmpty()) {
+                    writer.writeCharacters(valueNode.asString());
+                } else {
+                    writer.writeStartElement(key);
+                    _writeText(writer, valueNode, currentDepth + 1);
+                    writer.writeEndElement();
+                }
+                return null;
+            }
+            case ObjectNode objectNode -> {
+                writer.writeStartElement(key);
+                return new Frame(parent, objectNode.iterator(), null, null, currentDepth);
+            }
+            case ArrayNode arrayNode -> {
+                writer.writeStartElement(key);
+                // 嵌套数组没有可用的上文 key, 使用 itemName
+                return new Frame(parent, null, arrayNode.iterator(), inArray ? itemName : key, currentDepth);
+            }
+        }
+    }
+
+    /// 标签内的文本在 Element 树中是一个单独的 TextElement, 所以占用一层深度
+    private void _writeText(XmlWriter writer, ValueNode valueNode, int currentDepth) throws XMLStreamException, NodeToFormatException {
+        _checkDepth(currentDepth);
+        writer.writeCharacters(valueNode.asString());
+    }
+
+    private void _checkDepth(int currentDepth) throws NodeToFormatException {
+        if (currentDepth > maxNestingDepth) {
+            throw new NodeToFormatException("Nesting depth exceeds limit: " + maxNestingDepth);
+        }
+    }
+
+    /// 一个尚未写出结束标签的 ObjectNode 或 ArrayNode
+    private record Frame(Frame parent, Iterator<Map.Entry<String, Node>> objectIterator, Iterator<Node> arrayIterator, String itemKey, int depth) {
+
+        private boolean hasNext() {
+            return objectIterator != null ? objectIterator.hasNext() : arrayIterator.hasNext();
+        }
+
+    }
+
+}
@@ -0,0 +1,30 @@
+package dev.scx.format.xml;
+
+/// 被 [XmlMetrics] 记录的转换, 每种转换只对应一个阶段.
+///
+/// CompactDocument 与 Element 的对应方法记为同一种转换, query, streamRecords 和 XmlAsyncParser 记为对应的解析,
+/// XmlRecordWriter 记为 [#NODE_TO_FORMAT]. 惰性读取和写出的统计时机详见 [XmlMetricsListener]
+///
+/// @author scx567888
+/// @version 0.0.1
+public enum XmlOperation {
+
+    /// 解析 XML 为 Node (Woodstox 解析 和 Node 构建 同时进行), 计入 parseNanos
+    FORMAT_TO_NODE,
+
+    /// 解析 XML 为 Element, 计入 parseNanos
+    FORMAT_TO_ELEMENT,
+
+    /// ElementNodeConverter.elementToNode, 计入 convertNanos
+    ELEMENT_TO_NODE,
+
+    /// ElementNodeConverter.nodeToElement, 计入 convertNanos
+    NODE_TO_ELEMENT,
+
+    /// 将 Node 写出为 XML, 计入 serializeNanos
+    NODE_TO_FORMAT,
+
+    /// 将 Element 写出为 XML, 计入 serializeNanos
+    ELEMENT_TO_FORMAT
+
+}
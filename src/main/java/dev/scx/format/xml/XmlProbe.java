@@ -0,0 +1,381 @@
+package dev.scx.format.xml;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.util.StreamReader2Delegate;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/// 记录一次转换的统计信息, 在 [#close()] 时回调 [XmlMetricsListener] 并提交 JFR 事件.
+///
+/// 未启用时 [#begin(XmlMetricsListener, XmlOperation)] 返回共享的 [#NOOP], 所有方法都直接返回参数本身, 不会包装或计数.
+/// 启用时通过包装 reader, writer 和流来计数, 所以统计的是实际发生的事件 (投影跳过的子树不计入).
+/// 没有 reader 和 writer 的转换 (比如 elementToNode) 由转换过程自己调用 [#countElement(int, int)] 和 [#countText()].
+/// 惰性读取 (query, streamRecords) 使用 [#reader(AutoCloseableXMLStreamReader)], 在 reader 关闭时才提交.
+///
+/// 非线程安全, 每次转换创建一个.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlProbe implements AutoCloseable {
+
+    static final XmlProbe NOOP = new XmlProbe(null, null, false);
+
+    private final XmlMetricsListener listener;
+    private final XmlOperation operation;
+    private final boolean enabled;
+    private final long startNanos;
+    private long bytesIn;
+    private long bytesOut;
+    private long elementCount;
+    private long attributeCount;
+    private long textCount;
+    private int depth;
+    private int maxDepth;
+    private boolean success;
+    private boolean closed;
+    // 暂停期间 (比如异步解析等待数据) 的耗时不计入
+    private boolean paused;
+    private long pauseStartNanos;
+    private long pausedNanos;
+
+    private XmlProbe(XmlMetricsListener listener, XmlOperation operation, boolean enabled) {
+        this.listener = listener;
+        this.operation = operation;
+        this.enabled = enabled;
+        this.startNanos = enabled ? System.nanoTime() : 0;
+        this.bytesIn = -1;
+        this.bytesOut = -1;
+        this.success = false;
+        this.closed = false;
+        this.paused = false;
+        this.pausedNanos = 0;
+    }
+
+    /// @param listener 为 null 时只提交 JFR 事件
+    public static XmlProbe begin(XmlMetricsListener listener, XmlOperation operation) {
+        if (listener == null && !XmlConversionEvent.isTypeEnabled()) {
+            return NOOP;
+        }
+        return new XmlProbe(listener, operation, true);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /// 统计读取的事件, 读取到文档末尾时视为成功
+    public XMLStreamReader2 reader(XMLStreamReader2 reader) {
+        return enabled ? new CountingReader(reader) : reader;
+    }
+
+    /// 同 [#reader(XMLStreamReader2)], 并在返回的 reader 关闭时提交统计信息, 所以耗时包括调用方处理每个结果的时间
+    public AutoCloseableXMLStreamReader reader(AutoCloseableXMLStreamReader xmlStreamReader) {
+        if (!enabled) {
+            return xmlStreamReader;
+        }
+        var onClose = xmlStreamReader.onClose();
+        return new AutoCloseableXMLStreamReader(new CountingReader(xmlStreamReader.reader()), () -> {
+            try {
+                if (onClose != null) {
+                    onClose.run();
+                }
+            } finally {
+                close();
+            }
+        });
+    }
+
+    /// 统计写出的事件, 成功关闭时视为成功
+    public XmlWriter writer(XmlWriter writer) {
+        return enabled ? new CountingWriter(writer) : writer;
+    }
+
+    public InputStream input(InputStream inputStream) {
+        return enabled ? new CountingInputStream(inputStream) : inputStream;
+    }
+
+    public OutputStream output(OutputStream outputStream) {
+        return enabled ? new CountingOutputStream(outputStream) : outputStream;
+    }
+
+    public void bytesIn(long bytesIn) {
+        this.bytesIn = bytesIn;
+    }
+
+    /// 只在启用时才读取文件大小
+    public void bytesIn(File file) {
+        if (enabled) {
+            this.bytesIn = file.length();
+        }
+    }
+
+    /// 用于分多次到达的输入
+    public void addBytesIn(long bytes) {
+        if (enabled) {
+            bytesIn = Math.max(bytesIn, 0) + bytes;
+        }
+    }
+
+    public void bytesOut(long bytesOut) {
+        this.bytesOut = bytesOut;
+    }
+
+    /// 统计一个元素, depth 从 1 开始
+    public void countElement(int attributes, int depth) {
+        if (enabled) {
+            elementCount++;
+            attributeCount = attributeCount + attributes;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+
+    /// 每个 TextElement 都计入, 解析得到的树中本就不含纯空白文本
+    public void countText() {
+        if (enabled) {
+            textCount++;
+        }
+    }
+
+    public void success() {
+        success = true;
+    }
+
+    /// 元素, 属性和文本的数量以及深度均无法统计, 记为 -1
+    public void unknownCounts() {
+        if (enabled) {
+            elementCount = -1;
+            attributeCount = -1;
+            textCount = -1;
+            maxDepth = -1;
+        }
+    }
+
+    /// 清除已有的计数, 用于失败后重新开始的转换
+    public void resetCounts() {
+        if (enabled) {
+            elementCount = 0;
+            attributeCount = 0;
+            textCount = 0;
+            depth = 0;
+            maxDepth = 0;
+        }
+    }
+
+    public void pause() {
+        if (enabled && !paused) {
+            paused = true;
+            pauseStartNanos = System.nanoTime();
+        }
+    }
+
+    public void resume() {
+        if (enabled && paused) {
+            paused = false;
+            pausedNanos = pausedNanos + (System.nanoTime() - pauseStartNanos);
+        }
+    }
+
+    /// 用于在其他线程中计数, 完成后通过 [#merge(XmlProbe)] 合并, 自身不会提交统计信息
+    public XmlProbe fork() {
+        return enabled ? new XmlProbe(null, null, true) : NOOP;
+    }
+
+    /// 合并 [#fork()] 的计数, 调用方需要保证 fork 中的计数对当前线程可见 (比如 ForkJoinTask 的 join)
+    public void merge(XmlProbe fork) {
+        if (enabled) {
+            elementCount = elementCount + fork.elementCount;
+            attributeCount = attributeCount + fork.attributeCount;
+            textCount = textCount + fork.textCount;
+            maxDepth = Math.max(maxDepth, fork.maxDepth);
+        }
+    }
+
+    @Override
+    public void close() {
+        // fork 没有 listener, 也不提交 JFR 事件
+        if (!enabled || closed || operation == null) {
+            return;
+        }
+        resume();
+        closed = true;
+        var nanos = System.nanoTime() - startNanos - pausedNanos;
+        var parseNanos = operation == XmlOperation.FORMAT_TO_NODE || operation == XmlOperation.FORMAT_TO_ELEMENT ? nanos : 0;
+        var convertNanos = operation == XmlOperation.ELEMENT_TO_NODE || operation == XmlOperation.NODE_TO_ELEMENT ? nanos : 0;
+        var serializeNanos = operation == XmlOperation.NODE_TO_FORMAT || operation == XmlOperation.ELEMENT_TO_FORMAT ? nanos : 0;
+        if (XmlConversionEvent.isTypeEnabled()) {
+            var event = new XmlConversionEvent();
+            event.operation = operation.name();
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.elementCount = elementCount;
+            event.attributeCount = attributeCount;
+            event.textCount = textCount;
+            event.maxDepth = maxDepth;
+            event.parseNanos = parseNanos;
+            event.convertNanos = convertNanos;
+            event.serializeNanos = serializeNanos;
+            event.success = success;
+            event.commit();
+        }
+        if (listener != null) {
+            listener.onMetrics(new XmlMetrics(operation, bytesIn, bytesOut, elementCount, attributeCount, textCount, maxDepth, parseNanos, convertNanos, serializeNanos, success));
+        }
+    }
+
+    private void _startElement(int attributes, boolean empty) {
+        elementCount++;
+        attributeCount = attributeCount + attributes;
+        maxDepth = Math.max(maxDepth, depth + 1);
+        if (!empty) {
+            depth++;
+        }
+    }
+
+    private final class CountingReader extends StreamReader2Delegate {
+
+        private CountingReader(XMLStreamReader2 reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            var t = super.next();
+            switch (t) {
+                // 自闭合标签依然会有 END_ELEMENT 事件
+                case START_ELEMENT -> _startElement(getAttributeCount(), false);
+                case END_ELEMENT -> depth--;
+                case CHARACTERS, CDATA -> {
+                    if (!isWhiteSpace()) {
+                        textCount++;
+                    }
+                }
+                case END_DOCUMENT -> success = true;
+                default -> {
+                    // 其他事件不计数
+                }
+            }
+            return t;
+        }
+
+        @Override
+        public void skipElement() throws XMLStreamException {
+            // 跳过的子树不经过 next, 直接停在对应的 END_ELEMENT
+            super.skipElement();
+            depth--;
+        }
+
+    }
+
+    private final class CountingWriter implements XmlWriter {
+
+        private final XmlWriter writer;
+
+        private CountingWriter(XmlWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeStartElement(String name) throws XMLStreamException {
+            writer.writeStartElement(name);
+            _startElement(0, false);
+        }
+
+        @Override
+        public void writeEmptyElement(String name) throws XMLStreamException {
+            writer.writeEmptyElement(name);
+            _startElement(0, true);
+        }
+
+        @Override
+        public void writeAttribute(String name, String value) throws XMLStreamException {
+            writer.writeAttribute(name, value);
+            attributeCount++;
+        }
+
+        @Override
+        public void writeCharacters(String text) throws XMLStreamException {
+            writer.writeCharacters(text);
+            if (!XmlChars.isBlank(text)) {
+                textCount++;
+            }
+        }
+
+        @Override
+        public void writeEndElement() throws XMLStreamException {
+            writer.writeEndElement();
+            depth--;
+        }
+
+        @Override
+        public void flush() throws XMLStreamException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws XMLStreamException {
+            writer.close();
+            success = true;
+        }
+
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+            bytesIn = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = super.read();
+            if (b >= 0) {
+                bytesIn++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var n = super.read(b, off, len);
+            if (n > 0) {
+                bytesIn = bytesIn + n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = super.skip(n);
+            bytesIn = bytesIn + skipped;
+            return skipped;
+        }
+
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+            bytesOut = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytesOut++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream 默认逐字节写出, 这里直接写出整段
+            out.write(b, off, len);
+            bytesOut = bytesOut + len;
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package dev.scx.format.xml;
+
+import java.util.*;
+
+/// 路径投影, 解析时只保留路径命中的子树, 其余部分通过 XMLStreamReader2.skipElement 直接跳过.
+///
+/// 路径以 `/` 开头, 第一段匹配根元素, `*` 匹配任意名称, 比如 `/root/user/id`, `/root/posts/*/title`.
+///
+/// - 命中路径的元素 保留完整的子树 (包括属性和文本)
+/// - 命中元素的祖先元素 只保留通往命中元素的子元素, 属性和文本全部跳过
+/// - 匹配路径前缀 (比如 `*`) 但没有命中任何后代的元素 不保留
+/// - 没有命中任何路径时 根元素为自闭合的空元素 (Node 为 NullNode)
+///
+/// 多条路径在编译时合并为一棵确定的树 (`*` 已经合并到每个具体名称中), 所以解析时每个元素只需要一次查询.
+/// 编译完成后不再修改, 可以在多个线程之间共享.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlProjection {
+
+    /// 保留完整的子树
+    private static final XmlProjection KEEP_ALL = new XmlProjection(true, Map.of(), null);
+
+    /// 跳过所有子元素
+    private static final XmlProjection EMPTY = new XmlProjection(false, Map.of(), null);
+
+    private final boolean keepAll;
+    private final Map<String, XmlProjection> children;
+    private final XmlProjection anyChild;
+
+    private XmlProjection(boolean keepAll, Map<String, XmlProjection> children, XmlProjection anyChild) {
+        this.keepAll = keepAll;
+        this.children = children;
+        this.anyChild = anyChild;
+    }
+
+    /// 编译路径, paths 为空时返回 null (表示不需要投影)
+    public static XmlProjection of(List<String> paths) {
+        if (paths.isEmpty()) {
+            return null;
+        }
+        // 文档本身作为一个虚拟的父节点, 根元素是它的子节点
+        var document = new PathNode();
+        for (var path : paths) {
+            var node = document;
+            for (var segment : parsePath(path)) {
+                node = node.child(segment);
+            }
+            node.terminal = true;
+        }
+        return _compile(List.of(document));
+    }
+
+    /// 校验并拆分路径
+    public static String[] parsePath(String path) {
+        if (path == null) {
+            throw new NullPointerException("projection path cannot be null");
+        }
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("projection path must start with '/' : " + path);
+        }
+        var segments = path.substring(1).split("/", -1);
+        for (var segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("projection path contains empty segment : " + path);
+            }
+        }
+        return segments;
+    }
+
+    /// 根元素的投影, 返回 null 表示保留完整的文档
+    public static XmlProjection forRoot(XmlProjection projection, String rootName) {
+        if (projection == null) {
+            return null;
+        }
+        var root = projection.child(rootName);
+        if (root == null) {
+            return EMPTY;
+        }
+        return root.keepAll ? null : root;
+    }
+
+    /// 是否保留完整的子树
+    public boolean keepAll() {
+        return keepAll;
+    }
+
+    /// 子元素的投影, 返回 null 表示应当跳过这个子元素
+    public XmlProjection child(String name) {
+        var child = children.get(name);
+        return child != null ? child : anyChild;
+    }
+
+    /// 将多个路径节点 (同一个元素可能同时命中多条路径) 合并为一个确定的投影节点
+    private static XmlProjection _compile(List<PathNode> nodes) {
+        var anyNodes = new ArrayList<PathNode>();
+        var names = new LinkedHashSet<String>();
+        for (var node : nodes) {
+            // 任意一条路径在这里结束, 整个子树都需要保留
+            if (node.terminal) {
+                return KEEP_ALL;
+            }
+            if (node.anyChild != null) {
+                anyNodes.add(node.anyChild);
+            }
+            names.addAll(node.children.keySet());
+        }
+        var children = new HashMap<String, XmlProjection>();
+        for (var name : names) {
+            // 具体名称 同时也会命中 `*`
+            var matched = new ArrayList<>(anyNodes);
+            for (var node : nodes) {
+                var child = node.children.get(name);
+                if (child != null) {
+                    matched.add(child);
+                }
+            }
+            children.put(name, _compile(matched));
+        }
+        var anyChild = anyNodes.isEmpty() ? null : _compile(anyNodes);
+        return new XmlProjection(false, children, anyChild);
+    }
+
+    /// 编译前的路径树
+    private static final class PathNode {
+
+        private final Map<String, PathNode> children = new LinkedHashMap<>();
+        private PathNode anyChild;
+        private boolean terminal;
+
+        private PathNode child(String segment) {
+            if ("*".equals(segment)) {
+                if (anyChild == null) {
+                    anyChild = new PathNode();
+                }
+                return anyChild;
+            }
+            return children.computeIfAbsent(segment, k -> new PathNode());
+        }
+
+    }
+
+}
@@ -0,0 +1,545 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.xml.element.Element;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.format.xml.element.TextElement;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/// 预编译的 XPath 子集查询.
+///
+/// 语法:
+///
+/// - `/name` 子元素, `//name` 后代元素, `*` 匹配任意名称
+/// - `/@name` `//@name` 属性 (只能作为最后一步, 不能带谓词), `@*` 匹配任意属性
+/// - `[@name]` 存在属性, `[@name='value']` 属性值相等 (单引号或双引号)
+/// - `[n]` 下标 (从 1 开始), 和 XPath 一样按同一个父元素计算, 在它之前的谓词先生效, 比如 `//a[@x][2]`
+///
+/// 例如 `/root/user[@type='vip']/name`, `//post[1]/title`, `/root/user/@id`.
+///
+/// 同一个查询可以在两种模式下执行:
+///
+/// - 内存模式 [#select(TagElement)] 在已经解析的 TagElement 上查询, 只有一个具名子元素步骤时使用 [TagElement#children(String)] 的名称索引
+/// - 流式模式 CompiledXmlNodeConverter.query 和 CompiledXmlElementConverter.query 在一次前向读取中查询,
+///   不在路径上的子树直接跳过, 只有命中的元素才会被构建. 命中的元素会被整体读取, 所以其内部不会再产生新的命中
+///
+/// 编译完成后不再修改, 可以缓存并在多个线程之间共享.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class XmlQuery {
+
+    private final String expression;
+    private final Step[] steps;
+    // 所有下标谓词的数量, 每个父元素都需要这么多计数器
+    private final int counterCount;
+
+    private XmlQuery(String expression, Step[] steps, int counterCount) {
+        this.expression = expression;
+        this.steps = steps;
+        this.counterCount = counterCount;
+    }
+
+    /// 编译查询, 语法错误时抛出 IllegalArgumentException
+    public static XmlQuery compile(String expression) {
+        if (expression == null) {
+            throw new NullPointerException("expression cannot be null");
+        }
+        var steps = new Parser(expression).parse();
+        var counterCount = 0;
+        for (int i = 0; i < steps.size(); i++) {
+            var step = steps.get(i);
+            var positions = 0;
+            for (var predicate : step.predicates) {
+                if (predicate.position > 0) {
+                    positions++;
+                }
+            }
+            steps.set(i, new Step(step.descendant, step.attribute, step.name, step.predicates, counterCount));
+            counterCount = counterCount + positions;
+        }
+        return new XmlQuery(expression, steps.toArray(Step[]::new), counterCount);
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    /// 最后一步是否为属性
+    public boolean selectsAttribute() {
+        return steps[steps.length - 1].attribute;
+    }
+
+    /// 查询命中的元素 (按文档顺序), root 是文档的根元素, 即第一步匹配的对象.
+    /// 查询只读取 root, 同一棵树可以在多个线程中同时查询 (但查询期间不能被修改), 详见 [TagElement]
+    ///
+    /// @throws IllegalStateException 查询的是属性时, 请使用 [#selectValues(TagElement)]
+    public List<TagElement> select(TagElement root) {
+        if (selectsAttribute()) {
+            throw new IllegalStateException("Query selects attributes, use selectValues : " + expression);
+        }
+        var elements = new ArrayList<TagElement>();
+        _select(root, elements, null);
+        return elements;
+    }
+
+    /// 查询命中的值 (按文档顺序). 属性返回属性值, 元素返回其直接包含的文本 (多段文本直接拼接)
+    public List<String> selectValues(TagElement root) {
+        var values = new ArrayList<String>();
+        if (selectsAttribute()) {
+            _select(root, null, values::add);
+            return values;
+        }
+        var elements = new ArrayList<TagElement>();
+        _select(root, elements, null);
+        for (var element : elements) {
+            values.add(_text(element));
+        }
+        return values;
+    }
+
+    /// 创建一个新的匹配器 (有状态, 每次查询使用一个)
+    Matcher matcher(Consumer<String> attributeSink) {
+        return new Matcher(steps, counterCount, attributeSink);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private void _select(TagElement root, List<TagElement> elements, Consumer<String> attributeSink) {
+        var matcher = matcher(attributeSink);
+        var cursor = new TagElementCursor();
+        // 文档本身作为一个虚拟的父元素, 根元素是它唯一的子元素
+        var frame = new Frame(null, List.of(root).iterator(), matcher.initialMask(), matcher.newCounters());
+        while (frame != null) {
+            if (!frame.children.hasNext()) {
+                frame = frame.parent;
+                continue;
+            }
+            var child = frame.children.next();
+            if (!(child instanceof TagElement tag)) {
+                continue;
+            }
+            cursor.element = tag;
+            var childMask = matcher.match(cursor, frame.mask, frame.counters);
+            if (matcher.matched()) {
+                elements.add(tag);
+            }
+            if (childMask != 0 && !tag.isEmpty()) {
+                frame = new Frame(frame, _children(tag, childMask), childMask, matcher.newCounters());
+            }
+        }
+    }
+
+    /// 只有一个具名的子元素步骤时 可以直接使用名称索引
+    private Iterator<? extends Element> _children(TagElement element, long mask) {
+        if (Long.bitCount(mask) == 1) {
+            var step = steps[Long.numberOfTrailingZeros(mask)];
+            if (!step.descendant && !step.attribute && step.name != null) {
+                return element.children(step.name).iterator();
+            }
+        }
+        return element.iterator();
+    }
+
+    private static String _text(TagElement element) {
+        String text = null;
+        StringBuilder sb = null;
+        for (var child : element) {
+            if (child instanceof TextElement textElement) {
+                if (text == null) {
+                    text = textElement.text();
+                } else {
+                    if (sb == null) {
+                        sb = new StringBuilder(text);
+                    }
+                    sb.append(textElement.text());
+                }
+            }
+        }
+        if (sb != null) {
+            return sb.toString();
+        }
+        return text != null ? text : "";
+    }
+
+    /// 一个查询步骤
+    ///
+    /// @param name          null 表示匹配任意名称
+    /// @param counterOffset 第一个下标谓词的计数器下标
+    private record Step(boolean descendant, boolean attribute, String name, Predicate[] predicates, int counterOffset) {
+
+    }
+
+    /// 谓词, position 大于 0 时为下标谓词, 否则为属性谓词 (value 为 null 时只判断属性是否存在)
+    private record Predicate(int position, String name, String value) {
+
+        private boolean test(Cursor cursor) {
+            var actual = cursor.attribute(name);
+            if (actual == null) {
+                return false;
+            }
+            return value == null || value.equals(actual);
+        }
+
+    }
+
+    /// 内存模式中 一个尚未遍历完成的元素
+    private static final class Frame {
+
+        private final Frame parent;
+        private final Iterator<? extends Element> children;
+        private final long mask;
+        private final int[] counters;
+
+        private Frame(Frame parent, Iterator<? extends Element> children, long mask, int[] counters) {
+            this.parent = parent;
+            this.children = children;
+            this.mask = mask;
+            this.counters = counters;
+        }
+
+    }
+
+    /// 当前元素的名称和属性, 内存模式和流式模式各有一个实现, 每次查询只创建一个实例
+    interface Cursor {
+
+        String name();
+
+        int attributeSize();
+
+        String attributeName(int index);
+
+        String attributeValue(int index);
+
+        default String attribute(String name) {
+            var size = attributeSize();
+            for (int i = 0; i < size; i++) {
+                if (name.equals(attributeName(i))) {
+                    return attributeValue(i);
+                }
+            }
+            return null;
+        }
+
+    }
+
+    private static final class TagElementCursor implements Cursor {
+
+        private TagElement element;
+
+        @Override
+        public String name() {
+            return element.tagName();
+        }
+
+        @Override
+        public int attributeSize() {
+            return element.attributeSize();
+        }
+
+        @Override
+        public String attributeName(int index) {
+            return element.attributeAt(index).name();
+        }
+
+        @Override
+        public String attributeValue(int index) {
+            return element.attributeAt(index).value();
+        }
+
+        @Override
+        public String attribute(String name) {
+            var attribute = element.attribute(name);
+            return attribute != null ? attribute.value() : null;
+        }
+
+    }
+
+    static final class ReaderCursor implements Cursor {
+
+        private final XMLStreamReader2 reader;
+
+        ReaderCursor(XMLStreamReader2 reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String name() {
+            return reader.getLocalName();
+        }
+
+        @Override
+        public int attributeSize() {
+            return reader.getAttributeCount();
+        }
+
+        @Override
+        public String attributeName(int index) {
+            return reader.getAttributeLocalName(index);
+        }
+
+        @Override
+        public String attributeValue(int index) {
+            return reader.getAttributeValue(index);
+        }
+
+    }
+
+    /// 查询的状态机.
+    ///
+    /// 每个父元素持有一个 mask, 表示可以作用于其子元素的步骤 (第 i 位对应第 i 步, 所以最多支持 64 步).
+    /// 子元素命中第 i 步后, 第 i + 1 步作用于它的子元素; 后代步骤 (`//`) 会一直向下传递.
+    static final class Matcher {
+
+        private final Step[] steps;
+        private final int counterCount;
+        private final Consumer<String> attributeSink;
+        private boolean matched;
+
+        private Matcher(Step[] steps, int counterCount, Consumer<String> attributeSink) {
+            this.steps = steps;
+            this.counterCount = counterCount;
+            this.attributeSink = attributeSink;
+            this.matched = false;
+        }
+
+        /// 作用于根元素的步骤
+        long initialMask() {
+            var first = steps[0];
+            // 文档没有属性, 但 `//@x` 会作用于所有元素
+            if (first.attribute && !first.descendant) {
+                return 0;
+            }
+            return 1L;
+        }
+
+        /// 没有下标谓词时 返回 null
+        int[] newCounters() {
+            return counterCount == 0 ? null : new int[counterCount];
+        }
+
+        /// 上一次 [#match(Cursor, long, int\[\])] 的元素是否命中了最后一步
+        boolean matched() {
+            return matched;
+        }
+
+        /// 对一个元素应用父元素的 mask 中所有的步骤, 返回应当作用于其子元素的 mask.
+        /// 命中的属性值会立即交给 attributeSink
+        long match(Cursor cursor, long mask, int[] counters) {
+            matched = false;
+            var childMask = 0L;
+            // 同一个元素的属性只收集一次 (比如 `//a//@id` 中嵌套的 a)
+            var attributesCollected = false;
+            for (var m = mask; m != 0; m = m & (m - 1)) {
+                var i = Long.numberOfTrailingZeros(m);
+                var step = steps[i];
+                if (step.attribute) {
+                    // 只可能是后代属性步骤, 作用于每一个后代元素
+                    if (!attributesCollected) {
+                        _collectAttributes(cursor, step);
+                        attributesCollected = true;
+                    }
+                    childMask = childMask | (1L << i);
+                    continue;
+                }
+                if (step.descendant) {
+                    childMask = childMask | (1L << i);
+                }
+                if (!_test(cursor, step, counters)) {
+                    continue;
+                }
+                var next = i + 1;
+                if (next == steps.length) {
+                    matched = true;
+                    continue;
+                }
+                var nextStep = steps[next];
+                if (nextStep.attribute) {
+                    // 属性步骤作用于当前元素本身
+                    if (!attributesCollected) {
+                        _collectAttributes(cursor, nextStep);
+                        attributesCollected = true;
+                    }
+                    if (nextStep.descendant) {
+                        childMask = childMask | (1L << next);
+                    }
+                } else {
+                    childMask = childMask | (1L << next);
+                }
+            }
+            return childMask;
+        }
+
+        private static boolean _test(Cursor cursor, Step step, int[] counters) {
+            if (step.name != null && !step.name.equals(cursor.name())) {
+                return false;
+            }
+            var counter = step.counterOffset;
+            for (var predicate : step.predicates) {
+                if (predicate.position > 0) {
+                    counters[counter] = counters[counter] + 1;
+                    if (counters[counter] != predicate.position) {
+                        return false;
+                    }
+                    counter++;
+                } else if (!predicate.test(cursor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void _collectAttributes(Cursor cursor, Step step) {
+            if (step.name != null) {
+                var value = cursor.attribute(step.name);
+                if (value != null) {
+                    attributeSink.accept(value);
+                }
+                return;
+            }
+            var size = cursor.attributeSize();
+            for (int i = 0; i < size; i++) {
+                attributeSink.accept(cursor.attributeValue(i));
+            }
+        }
+
+    }
+
+    /// 手写的递归下降解析器
+    private static final class Parser {
+
+        private static final int MAX_STEPS = 64;
+
+        private final String expression;
+        private int position;
+
+        private Parser(String expression) {
+            this.expression = expression;
+            this.position = 0;
+        }
+
+        private List<Step> parse() {
+            var steps = new ArrayList<Step>();
+            if (expression.isEmpty()) {
+                throw _error("empty expression");
+            }
+            while (position < expression.length()) {
+                if (steps.size() == MAX_STEPS) {
+                    throw _error("too many steps (max " + MAX_STEPS + ")");
+                }
+                if (!steps.isEmpty() && steps.get(steps.size() - 1).attribute) {
+                    throw _error("attribute step must be the last step");
+                }
+                steps.add(_step());
+            }
+            return steps;
+        }
+
+        private Step _step() {
+            _expect('/');
+            var descendant = _accept('/');
+            var attribute = _accept('@');
+            var name = _name();
+            var predicates = new ArrayList<Predicate>();
+            while (_accept('[')) {
+                predicates.add(_predicate());
+                _expect(']');
+            }
+            if (attribute && !predicates.isEmpty()) {
+                throw _error("attribute step cannot have predicates");
+            }
+            // 和 reader 返回的名称一样 intern, 比较时可以命中 equals 的引用相等快速路径
+            return new Step(descendant, attribute, "*".equals(name) ? null : name.intern(), predicates.toArray(Predicate[]::new), 0);
+        }
+
+        private Predicate _predicate() {
+            if (_accept('@')) {
+                var name = _name();
+                if ("*".equals(name)) {
+                    throw _error("'*' is not allowed in attribute predicate");
+                }
+                String value = null;
+                if (_accept('=')) {
+                    value = _quoted();
+                }
+                return new Predicate(0, name.intern(), value);
+            }
+            var start = position;
+            while (position < expression.length() && Character.isDigit(expression.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw _error("expected '@' or index");
+            }
+            int index;
+            try {
+                index = Integer.parseInt(expression, start, position, 10);
+            } catch (NumberFormatException e) {
+                throw _error("invalid index");
+            }
+            if (index < 1) {
+                throw _error("index starts from 1");
+            }
+            return new Predicate(index, null, null);
+        }
+
+        private String _name() {
+            var start = position;
+            while (position < expression.length() && !_isDelimiter(expression.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw _error("expected name");
+            }
+            return expression.substring(start, position);
+        }
+
+        private String _quoted() {
+            if (position == expression.length()) {
+                throw _error("expected quoted value");
+            }
+            var quote = expression.charAt(position);
+            if (quote != '\'' && quote != '"') {
+                throw _error("expected quoted value");
+            }
+            var end = expression.indexOf(quote, position + 1);
+            if (end < 0) {
+                throw _error("unclosed quoted value");
+            }
+            var value = expression.substring(position + 1, end);
+            position = end + 1;
+            return value;
+        }
+
+        private boolean _accept(char c) {
+            if (position < expression.length() && expression.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void _expect(char c) {
+            if (!_accept(c)) {
+                throw _error("expected '" + c + "'");
+            }
+        }
+
+        private IllegalArgumentException _error(String message) {
+            return new IllegalArgumentException("Invalid query at " + position + ", " + message + " : " + expression);
+        }
+
+        private static boolean _isDelimiter(char c) {
+            return c == '/' || c == '[' || c == ']' || c == '@' || c == '=' || c == '\'' || c == '"' || Character.isWhitespace(c);
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.FormatToNodeException;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/// 在一次前向读取中执行 [XmlQuery], 依次返回命中的结果.
+///
+/// 不在查询路径上的子树直接跳过, 只有命中的元素才会被 elementReader 构建, 所以内存占用只取决于最大的单个结果.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlQueryIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private final AutoCloseableXMLStreamReader xmlStreamReader;
+    private final ElementReader<T> elementReader;
+    private final XmlQuery.Matcher matcher;
+    private final XmlQuery.Cursor cursor;
+    // 命中的属性值 在读取元素时可能一次产生多个
+    private final ArrayDeque<T> pending;
+    // 每一层父元素的 mask 和 下标计数器, 下标为 depth
+    private long[] masks;
+    private int[][] counters;
+    private int depth;
+    private boolean closed;
+
+    /// @param attributeMapper 查询属性时将属性值转换为结果
+    public XmlQueryIterator(AutoCloseableXMLStreamReader xmlStreamReader, XmlQuery query, ElementReader<T> elementReader, Function<String, T> attributeMapper) {
+        this.xmlStreamReader = xmlStreamReader;
+        this.elementReader = elementReader;
+        this.pending = new ArrayDeque<>();
+        this.matcher = query.matcher(value -> pending.add(attributeMapper.apply(value)));
+        this.cursor = new XmlQuery.ReaderCursor(xmlStreamReader.reader());
+        this.masks = new long[10];
+        this.counters = new int[10][];
+        this.masks[0] = matcher.initialMask();
+        this.counters[0] = matcher.newCounters();
+        this.depth = 0;
+        this.closed = false;
+    }
+
+    public Stream<T> stream() {
+        var spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!pending.isEmpty()) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            _readNext();
+        } catch (XMLStreamException e) {
+            close();
+            throw new FormatToNodeException(e);
+        }
+        if (pending.isEmpty()) {
+            // 已经读到文档末尾, 及时释放资源
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.poll();
+    }
+
+    private void _readNext() throws XMLStreamException {
+        var p = xmlStreamReader.reader();
+        while (pending.isEmpty() && p.hasNext()) {
+            var t = p.next();
+            if (t == START_ELEMENT) {
+                var childMask = matcher.match(cursor, masks[depth], counters[depth]);
+                // 命中, 整体读取 (同时消费掉对应的 END_ELEMENT)
+                if (matcher.matched()) {
+                    pending.add(elementReader.read(p));
+                    continue;
+                }
+                // 没有任何步骤作用于子元素, 直接跳过
+                if (childMask == 0) {
+                    p.skipElement();
+                    continue;
+                }
+                depth++;
+                if (depth == masks.length) {
+                    masks = Arrays.copyOf(masks, depth * 2);
+                    counters = Arrays.copyOf(counters, depth * 2);
+                }
+                masks[depth] = childMask;
+                // 复用同一层的计数器
+                if (counters[depth] == null) {
+                    counters[depth] = matcher.newCounters();
+                } else {
+                    Arrays.fill(counters[depth], 0);
+                }
+            } else if (t == END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.clear();
+        try {
+            xmlStreamReader.close();
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+    /// 从当前的 START_ELEMENT 开始读取, 直到与之对应的 END_ELEMENT 为止
+    @FunctionalInterface
+    interface ElementReader<T> {
+
+        T read(XMLStreamReader2 reader) throws XMLStreamException;
+
+    }
+
+}
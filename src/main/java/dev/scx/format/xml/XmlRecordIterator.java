@@ -0,0 +1,131 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.FormatToNodeException;
+import dev.scx.node.Node;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/// 按照 recordPath 逐条读取记录, 每条记录会被单独转换为 Node.
+///
+/// 不在 recordPath 上的元素会被直接跳过, 所以内存占用只取决于最大的单条记录, 而不是整个文档.
+///
+/// @author scx567888
+/// @version 0.0.1
+final class XmlRecordIterator implements Iterator<Node>, AutoCloseable {
+
+    private final AutoCloseableXMLStreamReader xmlStreamReader;
+    private final String[] recordPath;
+    private final int maxChildCount;
+    // 当前已经进入的 recordPath 层级
+    private int depth;
+    private Node next;
+    private boolean closed;
+
+    public XmlRecordIterator(AutoCloseableXMLStreamReader xmlStreamReader, String[] recordPath, int maxChildCount) {
+        this.xmlStreamReader = xmlStreamReader;
+        this.recordPath = recordPath;
+        this.maxChildCount = maxChildCount;
+        this.depth = 0;
+        this.next = null;
+        this.closed = false;
+    }
+
+    /// recordPath 形如 `/root/item`, 每一段都是元素名称, `*` 表示匹配任意名称
+    public static String[] parseRecordPath(String recordPath) {
+        if (recordPath == null) {
+            throw new NullPointerException("recordPath cannot be null");
+        }
+        var path = recordPath.startsWith("/") ? recordPath.substring(1) : recordPath;
+        var segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].isEmpty()) {
+                throw new IllegalArgumentException("Invalid recordPath: " + recordPath);
+            }
+        }
+        return segments;
+    }
+
+    public Stream<Node> stream() {
+        var spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            next = _readNext();
+        } catch (XMLStreamException e) {
+            close();
+            throw new FormatToNodeException(e);
+        }
+        if (next == null) {
+            // 已经读到文档末尾, 及时释放资源
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Node next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var node = next;
+        next = null;
+        return node;
+    }
+
+    private Node _readNext() throws XMLStreamException {
+        var p = xmlStreamReader.reader();
+        while (p.hasNext()) {
+            var t = p.next();
+            if (t == START_ELEMENT) {
+                var segment = recordPath[depth];
+                // 不在路径上的元素 直接跳过
+                if (!"*".equals(segment) && !segment.equals(p.getLocalName())) {
+                    p.skipElement();
+                    continue;
+                }
+                // 命中记录
+                if (depth == recordPath.length - 1) {
+                    return XmlNodeDeserializer.deserializeElement(p, maxChildCount);
+                }
+                depth++;
+            } else if (t == END_ELEMENT) {
+                depth--;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        try {
+            xmlStreamReader.close();
+        } catch (XMLStreamException e) {
+            throw new FormatToNodeException(e);
+        }
+    }
+
+}
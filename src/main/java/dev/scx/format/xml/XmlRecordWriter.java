@@ -0,0 +1,83 @@
+package dev.scx.format.xml;
+
+import dev.scx.format.NodeToFormatException;
+import dev.scx.node.Node;
+
+import javax.xml.stream.XMLStreamException;
+
+/// 逐条写出记录.
+///
+/// 创建时写出 `<rootName>`, 之后每次 [#write(Node)] 都会写出一个 `<itemName>` 子元素, [#close()] 时写出 `</rootName>`.
+/// 写出 N 条记录的结果与 nodeToFormat 一个包含这 N 条记录的 ArrayNode 完全相同, 但不需要把所有记录都保存在内存中.
+///
+/// 统计信息记为 [XmlOperation#NODE_TO_FORMAT], 在 [#close()] 时提交, 耗时包括调用方两次 write 之间的时间.
+///
+/// 非线程安全.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class XmlRecordWriter implements AutoCloseable {
+
+    private final XmlWriter xmlWriter;
+    private final XmlNodeSerializer xmlNodeSerializer;
+    private final XmlProbe probe;
+    private long count;
+    private boolean closed;
+
+    XmlRecordWriter(XmlWriter xmlWriter, XmlNodeSerializer xmlNodeSerializer, XmlProbe probe) throws XMLStreamException {
+        this.xmlWriter = xmlWriter;
+        this.xmlNodeSerializer = xmlNodeSerializer;
+        this.probe = probe;
+        this.count = 0;
+        this.closed = false;
+        xmlNodeSerializer.serializeRecordsStart(xmlWriter);
+    }
+
+    /// 写出一条记录
+    public void write(Node node) throws NodeToFormatException {
+        ensureOpen();
+        try {
+            xmlNodeSerializer.serializeRecord(xmlWriter, node);
+            count++;
+        } catch (XMLStreamException e) {
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    /// 将已经写出的记录刷新到底层输出
+    public void flush() throws NodeToFormatException {
+        ensureOpen();
+        try {
+            xmlWriter.flush();
+        } catch (XMLStreamException e) {
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    /// 已经写出的记录数量
+    public long count() {
+        return count;
+    }
+
+    /// 写出根元素的结束标签, 并关闭底层输出
+    @Override
+    public void close() throws NodeToFormatException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 先关闭 xmlWriter 再提交统计信息
+        try (probe; var w = xmlWriter) {
+            xmlNodeSerializer.serializeRecordsEnd(w);
+        } catch (XMLStreamException e) {
+            throw new NodeToFormatException(e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("XmlRecordWriter is closed");
+        }
+    }
+
+}
@@ -1,12 +1,16 @@
 package dev.scx.format.xml;
 
 import dev.scx.format.NodeToFormatException;
+import dev.scx.format.xml.element.CompactDocument;
 import dev.scx.format.xml.element.Element;
 import dev.scx.format.xml.element.TagElement;
 import dev.scx.format.xml.element.TextElement;
-import org.codehaus.stax2.XMLStreamWriter2;
 
 import javax.xml.stream.XMLStreamException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static dev.scx.format.xml.element.CompactDocument.NONE;
 
 /// XmlSerializer
 ///
@@ -22,46 +26,124 @@ final class XmlSerializer {
         this.rootName = options.rootName();
     }
 
-    public void serialize(XMLStreamWriter2 writer2, Element element) throws XMLStreamException, NodeToFormatException {
+    public void serialize(XmlWriter writer, Element element) throws XMLStreamException, NodeToFormatException {
         // 我们需要尝试包裹独立的 标签
         if (element instanceof TextElement) {
             var root = new TagElement(rootName, false);
             root.add(element);
-            _serialize(writer2, root, 1);
+            _serialize(writer, root, 1);
         } else {
-            _serialize(writer2, element, 1);
+            _serialize(writer, element, 1);
         }
     }
 
-    private void _serialize(XMLStreamWriter2 writer2, Element element, int currentDepth) throws XMLStreamException, NodeToFormatException {
-        if (currentDepth > maxNestingDepth) {
-            throw new NodeToFormatException("Nesting depth exceeds limit: " + maxNestingDepth);
+    /// 输出与 先 toElement 再 serialize 的结果逐字节相同
+    public void serialize(XmlWriter writer, CompactDocument document) throws XMLStreamException, NodeToFormatException {
+        var root = document.root();
+        _checkDepth(1);
+        if (_writeStart(writer, document, root)) {
+            return;
+        }
+        // 每一层下一个需要写出的子节点
+        var cursors = new int[16];
+        var depth = 0;
+        cursors[0] = document.firstChild(root);
+        while (depth >= 0) {
+            var node = cursors[depth];
+            if (node == NONE) {
+                writer.writeEndElement();
+                depth--;
+                continue;
+            }
+            cursors[depth] = document.nextSibling(node);
+            _checkDepth(depth + 2);
+            if (document.isText(node)) {
+                writer.writeCharacters(document.text(node));
+                continue;
+            }
+            if (_writeStart(writer, document, node)) {
+                continue;
+            }
+            depth++;
+            if (depth == cursors.length) {
+                cursors = Arrays.copyOf(cursors, depth * 2);
+            }
+            cursors[depth] = document.firstChild(node);
         }
+    }
+
+    /// 非递归实现, 嵌套深度只受 maxNestingDepth 限制, 不受线程栈大小限制
+    private void _serialize(XmlWriter writer, Element element, int currentDepth) throws XMLStreamException, NodeToFormatException {
+        _checkDepth(currentDepth);
+        var curr = _writeStart(writer, null, element, currentDepth);
+
+        while (curr != null) {
+            if (!curr.iterator.hasNext()) {
+                writer.writeEndElement();
+                curr = curr.parent;
+                continue;
+            }
+            var e = curr.iterator.next();
+            _checkDepth(curr.depth + 1);
+            var childFrame = _writeStart(writer, curr, e, curr.depth + 1);
+            if (childFrame != null) {
+                curr = childFrame;
+            }
+        }
+    }
+
+    /// 写出 element 的开始部分, 如果还需要继续写出子元素则返回对应的 Frame, 否则返回 null
+    private static Frame _writeStart(XmlWriter writer, Frame parent, Element element, int currentDepth) throws XMLStreamException {
         switch (element) {
             case TagElement tagElement -> {
                 // 没有子元素 使用自闭合标签
                 if (tagElement.isEmpty() && tagElement.useSelfClosing()) {
-                    writer2.writeEmptyElement(tagElement.tagName());
-                    for (var attribute : tagElement.attributes()) {
-                        writer2.writeAttribute(attribute.name(), attribute.value());
+                    writer.writeEmptyElement(tagElement.tagName());
+                    for (int i = 0; i < tagElement.attributeSize(); i++) {
+                        var attribute = tagElement.attributeAt(i);
+                        writer.writeAttribute(attribute.name(), attribute.value());
                     }
-                    return;
+                    return null;
                 }
 
                 // 标准标签
-                writer2.writeStartElement(tagElement.tagName());
-                for (var attribute : tagElement.attributes()) {
-                    writer2.writeAttribute(attribute.name(), attribute.value());
-                }
-                for (var e : tagElement) {
-                    _serialize(writer2, e, currentDepth + 1);
+                writer.writeStartElement(tagElement.tagName());
+                for (int i = 0; i < tagElement.attributeSize(); i++) {
+                    var attribute = tagElement.attributeAt(i);
+                    writer.writeAttribute(attribute.name(), attribute.value());
                 }
-                writer2.writeEndElement();
+                return new Frame(parent, tagElement.iterator(), currentDepth);
             }
             case TextElement textElement -> {
-                writer2.writeCharacters(textElement.text());
+                writer.writeCharacters(textElement.text());
+                return null;
             }
         }
     }
 
+    /// 写出标签的开始部分, 使用自闭合标签时返回 true
+    private static boolean _writeStart(XmlWriter writer, CompactDocument document, int node) throws XMLStreamException {
+        var selfClosing = document.isEmpty(node) && document.useSelfClosing(node);
+        if (selfClosing) {
+            writer.writeEmptyElement(document.tagName(node));
+        } else {
+            writer.writeStartElement(document.tagName(node));
+        }
+        for (int i = 0; i < document.attributeSize(node); i++) {
+            writer.writeAttribute(document.attributeName(node, i), document.attributeValue(node, i));
+        }
+        return selfClosing;
+    }
+
+    private void _checkDepth(int currentDepth) throws NodeToFormatException {
+        if (currentDepth > maxNestingDepth) {
+            throw new NodeToFormatException("Nesting depth exceeds limit: " + maxNestingDepth);
+        }
+    }
+
+    /// 一个尚未写出结束标签的 TagElement
+    private record Frame(Frame parent, Iterator<Element> iterator, int depth) {
+
+    }
+
 }
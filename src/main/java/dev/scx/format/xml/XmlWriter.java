@@ -0,0 +1,29 @@
+package dev.scx.format.xml;
+
+import javax.xml.stream.XMLStreamException;
+
+/// XmlSerializer 和 XmlNodeSerializer 实际用到的 XMLStreamWriter 子集.
+///
+/// 语义与 XMLStreamWriter 相同, [#close()] 与 XMLStreamWriter2.closeCompletely 相同
+/// (补全所有未结束的元素, 并关闭底层输出).
+///
+/// @author scx567888
+/// @version 0.0.1
+interface XmlWriter extends AutoCloseable {
+
+    void writeStartElement(String name) throws XMLStreamException;
+
+    void writeEmptyElement(String name) throws XMLStreamException;
+
+    void writeAttribute(String name, String value) throws XMLStreamException;
+
+    void writeCharacters(String text) throws XMLStreamException;
+
+    void writeEndElement() throws XMLStreamException;
+
+    void flush() throws XMLStreamException;
+
+    @Override
+    void close() throws XMLStreamException;
+
+}
@@ -0,0 +1,16 @@
+package dev.scx.format.xml;
+
+/// 写出 XML 时使用的实现
+///
+/// @author scx567888
+/// @version 0.0.1
+public enum XmlWriterBackend {
+
+    /// Woodstox XMLStreamWriter2, 支持所有输出方式和字符集
+    STAX,
+
+    /// 直接写出 UTF-8 字节, 不经过 XMLStreamWriter 的名称校验和逐字符转义.
+    /// 输出与 STAX 逐字节相同, 只作用于 UTF-8 的 OutputStream, byte[] 和 File 输出, 其余情况依然使用 STAX
+    FAST
+
+}
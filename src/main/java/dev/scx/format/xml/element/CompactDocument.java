@@ -0,0 +1,409 @@
+package dev.scx.format.xml.element;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/// 紧凑的只读文档模型, 可以作为 TagElement/TextElement 的替代.
+///
+/// 整个文档保存在若干个平行的基本类型数组中, 每个节点只是一个 int 下标 (根节点为 0),
+/// 标签名和属性名统一存放在去重后的名称表中, 文本和属性值统一存放在一个共享的 char 数组中.
+/// 相比每个节点一个对象 (外加属性和子元素列表以及若干 Attribute) 的结构, 对象头的开销几乎为零,
+/// 适合需要长时间缓存在内存中的大文档.
+///
+/// 实例不可变, 可以在多个线程之间共享. 可以通过 [Builder] 或 [#of(TagElement)] 创建.
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class CompactDocument {
+
+    /// 表示不存在的节点 (比如没有子节点, 没有下一个兄弟节点)
+    public static final int NONE = -1;
+
+    private static final byte TAG = 0;
+    private static final byte SELF_CLOSING_TAG = 1;
+    private static final byte TEXT = 2;
+
+    private final int size;
+    private final byte[] kinds;
+    // 标签: 名称表中的下标, 文本: NONE
+    private final int[] names;
+    private final int[] firstChilds;
+    private final int[] nextSiblings;
+    // 标签: 第一个属性的下标, 文本: 在 chars 中的起始位置
+    private final int[] offsets;
+    // 标签: 属性数量, 文本: 字符数量
+    private final int[] lengths;
+    private final String[] nameTable;
+    private final int[] attributeNames;
+    private final int[] attributeValueOffsets;
+    private final int[] attributeValueLengths;
+    private final char[] chars;
+
+    private CompactDocument(Builder builder) {
+        // 缓存的文档可能存活很久, 这里裁剪掉 Builder 预留的空间
+        this.size = builder.size;
+        this.kinds = Arrays.copyOf(builder.kinds, builder.size);
+        this.names = Arrays.copyOf(builder.names, builder.size);
+        this.firstChilds = Arrays.copyOf(builder.firstChilds, builder.size);
+        this.nextSiblings = Arrays.copyOf(builder.nextSiblings, builder.size);
+        this.offsets = Arrays.copyOf(builder.offsets, builder.size);
+        this.lengths = Arrays.copyOf(builder.lengths, builder.size);
+        this.nameTable = builder.nameTable.toArray(String[]::new);
+        this.attributeNames = Arrays.copyOf(builder.attributeNames, builder.attributeSize);
+        this.attributeValueOffsets = Arrays.copyOf(builder.attributeValueOffsets, builder.attributeSize);
+        this.attributeValueLengths = Arrays.copyOf(builder.attributeValueLengths, builder.attributeSize);
+        this.chars = Arrays.copyOf(builder.chars, builder.charSize);
+    }
+
+    /// 根据已有的 TagElement 创建
+    public static CompactDocument of(TagElement element) {
+        var builder = new Builder();
+        builder._startElement(element);
+        var iterators = new ArrayDeque<Iterator<Element>>();
+        iterators.push(element.iterator());
+        while (!iterators.isEmpty()) {
+            var iterator = iterators.peek();
+            if (!iterator.hasNext()) {
+                builder.endTag();
+                iterators.pop();
+                continue;
+            }
+            switch (iterator.next()) {
+                case TagElement tagElement -> {
+                    builder._startElement(tagElement);
+                    iterators.push(tagElement.iterator());
+                }
+                case TextElement textElement -> builder.text(textElement.text());
+            }
+        }
+        return builder.build();
+    }
+
+    /// 根节点
+    public int root() {
+        return 0;
+    }
+
+    /// 节点总数 (标签和文本)
+    public int size() {
+        return size;
+    }
+
+    //***************** 节点 相关方法 *******************
+
+    public boolean isTag(int node) {
+        return kinds[node] != TEXT;
+    }
+
+    public boolean isText(int node) {
+        return kinds[node] == TEXT;
+    }
+
+    public String tagName(int node) {
+        _checkTag(node);
+        return nameTable[names[node]];
+    }
+
+    public boolean useSelfClosing(int node) {
+        _checkTag(node);
+        return kinds[node] == SELF_CLOSING_TAG;
+    }
+
+    public String text(int node) {
+        if (kinds[node] != TEXT) {
+            throw new IllegalArgumentException("Node is not a text: " + node);
+        }
+        return new String(chars, offsets[node], lengths[node]);
+    }
+
+    //***************** children 相关方法 *******************
+
+    /// 第一个子节点, 没有时返回 [#NONE]
+    public int firstChild(int node) {
+        return firstChilds[node];
+    }
+
+    /// 下一个兄弟节点, 没有时返回 [#NONE]
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public boolean isEmpty(int node) {
+        return firstChilds[node] == NONE;
+    }
+
+    //***************** attributes 相关方法 *******************
+
+    public int attributeSize(int node) {
+        return kinds[node] == TEXT ? 0 : lengths[node];
+    }
+
+    public String attributeName(int node, int index) {
+        return nameTable[attributeNames[_attributeIndex(node, index)]];
+    }
+
+    public String attributeValue(int node, int index) {
+        var i = _attributeIndex(node, index);
+        return new String(chars, attributeValueOffsets[i], attributeValueLengths[i]);
+    }
+
+    /// 转换为 TagElement 结构
+    public TagElement toElement() {
+        var root = _createTagElement(0);
+        var elements = new TagElement[16];
+        var cursors = new int[16];
+        var depth = 0;
+        elements[0] = root;
+        cursors[0] = firstChilds[0];
+        while (depth >= 0) {
+            var node = cursors[depth];
+            if (node == NONE) {
+                depth--;
+                continue;
+            }
+            cursors[depth] = nextSiblings[node];
+            if (kinds[node] == TEXT) {
+                elements[depth].add(new TextElement(text(node)));
+                continue;
+            }
+            var tagElement = _createTagElement(node);
+            elements[depth].add(tagElement);
+            if (firstChilds[node] != NONE) {
+                depth++;
+                if (depth == elements.length) {
+                    elements = Arrays.copyOf(elements, depth * 2);
+                    cursors = Arrays.copyOf(cursors, depth * 2);
+                }
+                elements[depth] = tagElement;
+                cursors[depth] = firstChilds[node];
+            }
+        }
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        return toElement().toString();
+    }
+
+    private TagElement _createTagElement(int node) {
+        var tagElement = new TagElement(tagName(node), useSelfClosing(node));
+        tagElement.ensureAttributeCapacity(lengths[node]);
+        for (int i = 0; i < lengths[node]; i++) {
+            tagElement.addAttribute(attributeName(node, i), attributeValue(node, i));
+        }
+        return tagElement;
+    }
+
+    private void _checkTag(int node) {
+        if (kinds[node] == TEXT) {
+            throw new IllegalArgumentException("Node is not a tag: " + node);
+        }
+    }
+
+    private int _attributeIndex(int node, int index) {
+        if (index < 0 || index >= attributeSize(node)) {
+            throw new IndexOutOfBoundsException("Attribute index out of range: " + index);
+        }
+        return offsets[node] + index;
+    }
+
+    /// 按文档顺序构建 CompactDocument, 和 SAX/StAX 的事件一一对应.
+    ///
+    /// 非线程安全.
+    public static final class Builder {
+
+        private int size;
+        private byte[] kinds;
+        private int[] names;
+        private int[] firstChilds;
+        private int[] nextSiblings;
+        private int[] offsets;
+        private int[] lengths;
+        private final HashMap<String, Integer> nameIndexes;
+        private final ArrayList<String> nameTable;
+        private int attributeSize;
+        private int[] attributeNames;
+        private int[] attributeValueOffsets;
+        private int[] attributeValueLengths;
+        private int charSize;
+        private char[] chars;
+        // 尚未结束的标签, 以及它们各自最后一个子节点
+        private int depth;
+        private int[] openTags;
+        private int[] lastChilds;
+
+        public Builder() {
+            this.size = 0;
+            this.kinds = new byte[64];
+            this.names = new int[64];
+            this.firstChilds = new int[64];
+            this.nextSiblings = new int[64];
+            this.offsets = new int[64];
+            this.lengths = new int[64];
+            this.nameIndexes = new HashMap<>();
+            this.nameTable = new ArrayList<>();
+            this.attributeSize = 0;
+            this.attributeNames = new int[16];
+            this.attributeValueOffsets = new int[16];
+            this.attributeValueLengths = new int[16];
+            this.charSize = 0;
+            this.chars = new char[1024];
+            this.depth = 0;
+            this.openTags = new int[16];
+            this.lastChilds = new int[16];
+        }
+
+        public Builder startTag(String tagName, boolean useSelfClosing) {
+            if (depth == 0 && size != 0) {
+                throw new IllegalStateException("Document already has a root element");
+            }
+            var node = _addNode(useSelfClosing ? SELF_CLOSING_TAG : TAG);
+            names[node] = _nameIndex(tagName);
+            offsets[node] = attributeSize;
+            lengths[node] = 0;
+            if (depth == openTags.length) {
+                openTags = Arrays.copyOf(openTags, depth * 2);
+                lastChilds = Arrays.copyOf(lastChilds, depth * 2);
+            }
+            openTags[depth] = node;
+            lastChilds[depth] = NONE;
+            depth++;
+            return this;
+        }
+
+        /// 只能在 [#startTag(String, boolean)] 之后, 添加任何子节点之前调用
+        public Builder attribute(String name, String value) {
+            if (depth == 0 || openTags[depth - 1] != size - 1) {
+                throw new IllegalStateException("Attributes must directly follow startTag");
+            }
+            if (attributeSize == attributeNames.length) {
+                var newLength = _newLength(attributeSize);
+                attributeNames = Arrays.copyOf(attributeNames, newLength);
+                attributeValueOffsets = Arrays.copyOf(attributeValueOffsets, newLength);
+                attributeValueLengths = Arrays.copyOf(attributeValueLengths, newLength);
+            }
+            attributeNames[attributeSize] = _nameIndex(name);
+            attributeValueOffsets[attributeSize] = _appendChars(value);
+            attributeValueLengths[attributeSize] = value.length();
+            attributeSize++;
+            lengths[size - 1] = lengths[size - 1] + 1;
+            return this;
+        }
+
+        public Builder text(String text) {
+            _checkOpen();
+            var node = _addNode(TEXT);
+            names[node] = NONE;
+            offsets[node] = _appendChars(text);
+            lengths[node] = text.length();
+            return this;
+        }
+
+        /// 直接从解析器的字符缓冲区复制, 避免创建中间的 String
+        public Builder text(char[] text, int start, int length) {
+            _checkOpen();
+            var node = _addNode(TEXT);
+            names[node] = NONE;
+            _ensureCharCapacity(length);
+            System.arraycopy(text, start, chars, charSize, length);
+            offsets[node] = charSize;
+            lengths[node] = length;
+            charSize = charSize + length;
+            return this;
+        }
+
+        public Builder endTag() {
+            _checkOpen();
+            depth--;
+            return this;
+        }
+
+        public CompactDocument build() {
+            if (size == 0) {
+                throw new IllegalStateException("Document has no root element");
+            }
+            if (depth != 0) {
+                throw new IllegalStateException("Unclosed tag: " + nameTable.get(names[openTags[depth - 1]]));
+            }
+            return new CompactDocument(this);
+        }
+
+        private void _startElement(TagElement tagElement) {
+            startTag(tagElement.tagName(), tagElement.useSelfClosing());
+            for (int i = 0; i < tagElement.attributeSize(); i++) {
+                var attribute = tagElement.attributeAt(i);
+                attribute(attribute.name(), attribute.value());
+            }
+        }
+
+        private int _addNode(byte kind) {
+            if (size == kinds.length) {
+                var newLength = _newLength(size);
+                kinds = Arrays.copyOf(kinds, newLength);
+                names = Arrays.copyOf(names, newLength);
+                firstChilds = Arrays.copyOf(firstChilds, newLength);
+                nextSiblings = Arrays.copyOf(nextSiblings, newLength);
+                offsets = Arrays.copyOf(offsets, newLength);
+                lengths = Arrays.copyOf(lengths, newLength);
+            }
+            var node = size;
+            size++;
+            kinds[node] = kind;
+            firstChilds[node] = NONE;
+            nextSiblings[node] = NONE;
+            // 挂到父节点上
+            if (depth != 0) {
+                var parent = depth - 1;
+                var lastChild = lastChilds[parent];
+                if (lastChild == NONE) {
+                    firstChilds[openTags[parent]] = node;
+                } else {
+                    nextSiblings[lastChild] = node;
+                }
+                lastChilds[parent] = node;
+            }
+            return node;
+        }
+
+        private int _nameIndex(String name) {
+            var index = nameIndexes.get(name);
+            if (index == null) {
+                index = nameTable.size();
+                nameTable.add(name);
+                nameIndexes.put(name, index);
+            }
+            return index;
+        }
+
+        private int _appendChars(String value) {
+            var length = value.length();
+            _ensureCharCapacity(length);
+            value.getChars(0, length, chars, charSize);
+            var offset = charSize;
+            charSize = charSize + length;
+            return offset;
+        }
+
+        private void _ensureCharCapacity(int length) {
+            if (charSize + length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(_newLength(chars.length), charSize + length));
+            }
+        }
+
+        private void _checkOpen() {
+            if (depth == 0) {
+                throw new IllegalStateException("No open tag");
+            }
+        }
+
+        private static int _newLength(int oldLength) {
+            return oldLength + Math.max(16, oldLength >> 1);
+        }
+
+    }
+
+}
@@ -1,25 +1,48 @@
 package dev.scx.format.xml.element;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 /// TagElement
 ///
+/// 大多数元素没有属性, 叶子元素也只有一个文本子元素, 所以 attributes 和 children 都是按需分配的:
+/// 空时使用共享的空列表, 只有一个元素时使用 singletonList, 之后才会升级为 ArrayList.
+/// [#children()] 和 [#attributes()] 返回的是可修改的视图, 始终反映当前的内容, 通过视图的修改会在需要时才升级为 ArrayList.
+///
+/// 按名称查找 ([#child(String)], [#children(String)], [#attribute(String)]) 在数量较少时直接遍历,
+/// 达到阈值后会建立名称索引 (之后的查找不再随数量线性增长).
+/// 任何修改 (包括通过视图及其迭代器的 set, add, remove, clear) 都会使对应的索引失效.
+///
+/// 修改非线程安全. 不再修改的 TagElement 可以在多个线程之间并发读取 (包括按名称查找):
+/// 索引在完全建立后才通过 volatile 字段整体发布, 并发建立时只是重复建立, 不会读取到不完整的索引.
+///
 /// @author scx567888
 /// @version 0.0.1
 public final class TagElement implements Element, Iterable<Element> {
 
+    // 子元素 (或属性) 达到这个数量时才会建立名称索引
+    private static final int INDEX_THRESHOLD = 8;
+
     private final String tagName;
     private final boolean useSelfClosing;
-    private final List<Attribute> attributes;
-    private final List<Element> children;
+    private List<Attribute> attributes;
+    private List<Element> children;
+    // children() 和 attributes() 返回的视图, 按需创建
+    private ChildrenView childrenView;
+    private AttributesView attributesView;
+    // 子元素的名称索引, 按需创建, 子元素变化后失效. 建立完成后不再修改
+    private volatile Map<String, List<TagElement>> childIndex;
+    // 属性的名称索引, 规则同上
+    private volatile Map<String, Attribute> attributeIndex;
 
     public TagElement(String tagName, boolean useSelfClosing) {
         this.tagName = tagName;
         this.useSelfClosing = useSelfClosing;
-        this.attributes = new ArrayList<>();
-        this.children = new ArrayList<>();
+        this.attributes = List.of();
+        this.children = List.of();
+        this.childrenView = null;
+        this.attributesView = null;
+        this.childIndex = null;
+        this.attributeIndex = null;
     }
 
     public String tagName() {
@@ -33,7 +56,8 @@ public final class TagElement implements Element, Iterable<Element> {
     //***************** children 相关方法 *******************
 
     public void add(Element element) {
-        this.children.add(element);
+        this.children = _add(children, element);
+        this.childIndex = null;
     }
 
     public int size() {
@@ -45,26 +69,85 @@ public final class TagElement implements Element, Iterable<Element> {
     }
 
     public void clear() {
-        children.clear();
+        this.children = List.of();
+        this.childIndex = null;
     }
 
+    /// 可修改的视图, 通过它进行的修改同样会使名称索引失效
     public List<Element> children() {
-        return children;
+        var view = childrenView;
+        if (view == null) {
+            view = new ChildrenView();
+            this.childrenView = view;
+        }
+        return view;
     }
 
+    /// 第一个名称为 name 的子元素, 不存在时返回 null
+    public TagElement child(String name) {
+        // 子元素很少时 直接遍历比建立索引更快
+        if (children.size() < INDEX_THRESHOLD) {
+            for (var child : children) {
+                if (child instanceof TagElement tag && tag.tagName.equals(name)) {
+                    return tag;
+                }
+            }
+            return null;
+        }
+        var list = _childIndex().get(name);
+        return list != null ? list.get(0) : null;
+    }
+
+    /// 名称为 name 的所有子元素 (按文档顺序), 返回的列表不可修改.
+    ///
+    /// 子元素较多时, 第一次调用会建立名称索引, 之后的查询无需遍历所有子元素.
+    public List<TagElement> children(String name) {
+        // 子元素很少时 直接遍历比建立索引更快
+        if (children.size() < INDEX_THRESHOLD) {
+            var list = new ArrayList<TagElement>(1);
+            for (var child : children) {
+                if (child instanceof TagElement tag && tag.tagName.equals(name)) {
+                    list.add(tag);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+        return _childIndex().getOrDefault(name, List.of());
+    }
+
+    /// 迭代器的 remove 同样会使名称索引失效
     @Override
     public Iterator<Element> iterator() {
-        return children.iterator();
+        return children().iterator();
     }
 
     //***************** attributes 相关方法 *******************
 
     public void addAttribute(Attribute attribute) {
-        this.attributes.add(attribute);
+        this.attributes = _add(attributes, attribute);
+        this.attributeIndex = null;
     }
 
     public void addAttribute(String name, String value) {
-        attributes.add(new Attribute(name, value));
+        this.attributes = _add(attributes, new Attribute(name, value));
+        this.attributeIndex = null;
+    }
+
+    /// 预先分配属性的容量, 解析器已知属性数量时使用
+    public void ensureAttributeCapacity(int capacity) {
+        if (attributes instanceof ArrayList<Attribute> list) {
+            list.ensureCapacity(capacity);
+        } else if (capacity > 1) {
+            // 0 或 1 个属性时 无需 ArrayList
+            var list = new ArrayList<Attribute>(capacity);
+            list.addAll(attributes);
+            this.attributes = list;
+        }
+    }
+
+    /// 按下标获取属性, 不会像 [#attributes()] 一样分配 ArrayList
+    public Attribute attributeAt(int index) {
+        return attributes.get(index);
     }
 
     public int attributeSize() {
@@ -76,11 +159,166 @@ public final class TagElement implements Element, Iterable<Element> {
     }
 
     public void clearAttributes() {
-        attributes.clear();
+        this.attributes = List.of();
+        this.attributeIndex = null;
     }
 
+    /// 可修改的视图, 规则同 [#children()]
     public List<Attribute> attributes() {
-        return attributes;
+        var view = attributesView;
+        if (view == null) {
+            view = new AttributesView();
+            this.attributesView = view;
+        }
+        return view;
+    }
+
+    /// 名称为 name 的属性 (同名属性只返回第一个), 不存在时返回 null. 索引规则同 [#children(String)]
+    public Attribute attribute(String name) {
+        // 属性很少时 直接遍历比建立索引更快
+        if (attributes.size() < INDEX_THRESHOLD) {
+            for (var attribute : attributes) {
+                if (attribute.name().equals(name)) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+        return _attributeIndex().get(name);
+    }
+
+    private Map<String, List<TagElement>> _childIndex() {
+        var childIndex = this.childIndex;
+        if (childIndex != null) {
+            return childIndex;
+        }
+        var index = new HashMap<String, List<TagElement>>();
+        for (var child : children) {
+            if (child instanceof TagElement tag) {
+                index.computeIfAbsent(tag.tagName, k -> new ArrayList<>(1)).add(tag);
+            }
+        }
+        for (var entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        // 建立完成后才发布
+        this.childIndex = index;
+        return index;
+    }
+
+    private Map<String, Attribute> _attributeIndex() {
+        var attributeIndex = this.attributeIndex;
+        if (attributeIndex != null) {
+            return attributeIndex;
+        }
+        var index = new HashMap<String, Attribute>();
+        for (var attribute : attributes) {
+            index.putIfAbsent(attribute.name(), attribute);
+        }
+        // 建立完成后才发布
+        this.attributeIndex = index;
+        return index;
+    }
+
+    private static <T> List<T> _add(List<T> list, T e) {
+        if (list instanceof ArrayList<T> arrayList) {
+            arrayList.add(e);
+            return arrayList;
+        }
+        // 第一个元素
+        if (list.isEmpty()) {
+            return Collections.singletonList(e);
+        }
+        // 第二个元素 升级为 ArrayList
+        var arrayList = new ArrayList<T>(4);
+        arrayList.addAll(list);
+        arrayList.add(e);
+        return arrayList;
+    }
+
+    private static <T> ArrayList<T> _toArrayList(List<T> list) {
+        if (list instanceof ArrayList<T> arrayList) {
+            return arrayList;
+        }
+        return new ArrayList<>(list);
+    }
+
+    /// 读取时直接访问当前的列表, 修改时先升级为 ArrayList 并使名称索引失效.
+    /// AbstractList 其余的修改方法 (addAll, removeIf, sort, 迭代器的 remove 和 set 等) 最终都会经过这里
+    private abstract static class ListView<T> extends AbstractList<T> implements RandomAccess {
+
+        abstract List<T> list();
+
+        abstract ArrayList<T> listForWrite();
+
+        @Override
+        public T get(int index) {
+            return list().get(index);
+        }
+
+        @Override
+        public int size() {
+            return list().size();
+        }
+
+        @Override
+        public T set(int index, T element) {
+            return listForWrite().set(index, element);
+        }
+
+        @Override
+        public void add(int index, T element) {
+            listForWrite().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public T remove(int index) {
+            var old = listForWrite().remove(index);
+            modCount++;
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            listForWrite().clear();
+            modCount++;
+        }
+
+    }
+
+    private final class ChildrenView extends ListView<Element> {
+
+        @Override
+        List<Element> list() {
+            return children;
+        }
+
+        @Override
+        ArrayList<Element> listForWrite() {
+            var list = _toArrayList(children);
+            children = list;
+            childIndex = null;
+            return list;
+        }
+
+    }
+
+    private final class AttributesView extends ListView<Attribute> {
+
+        @Override
+        List<Attribute> list() {
+            return attributes;
+        }
+
+        @Override
+        ArrayList<Attribute> listForWrite() {
+            var list = _toArrayList(attributes);
+            attributes = list;
+            attributeIndex = null;
+            return list;
+        }
+
     }
 
     @Override
@@ -0,0 +1,90 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.ElementNodeConverter;
+import dev.scx.format.xml.XmlElementConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.element.CompactDocument;
+import dev.scx.format.xml.element.TagElement;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+
+public class CompactDocumentTest {
+
+    private final static String xml = """
+        <root a="1" b="x&amp;y">
+            文本
+            <user id="7">
+                <name>小明</name>
+                <tag/>
+                <tag></tag>
+                <tag k="v"/>
+            </user>
+            <user id="8"><name>小红</name>尾部</user>
+            <empty/>
+        </root>
+        """;
+
+    private static final XmlElementConverter xmlElementConverter = new XmlElementConverter();
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws XMLStreamException, IOException {
+        test1();
+        test2();
+    }
+
+    /// CompactDocument 的输出和 Node 转换结果应与 TagElement 完全一致
+    @Test
+    public static void test1() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions();
+        var element = xmlElementConverter.formatToElement(xml, options);
+        var document = xmlElementConverter.formatToCompactDocument(xml, options);
+
+        var expected = xmlElementConverter.elementToFormatString(element, options);
+        Assert.assertEquals(xmlElementConverter.compactDocumentToFormatString(document, options), expected);
+        Assert.assertEquals(xmlElementConverter.elementToFormatString(document.toElement(), options), expected);
+        Assert.assertEquals(xmlElementConverter.compactDocumentToFormatString(CompactDocument.of((TagElement) element), options), expected);
+
+        var converter = new ElementNodeConverter(options);
+        Assert.assertEquals(
+            xmlNodeConverter.nodeToFormatString(converter.compactDocumentToNode(document), options),
+            xmlNodeConverter.nodeToFormatString(converter.elementToNode(element), options)
+        );
+    }
+
+    /// 导航
+    @Test
+    public static void test2() throws XMLStreamException, IOException {
+        var document = xmlElementConverter.formatToCompactDocument(xml, new XmlNodeConverterOptions());
+
+        var root = document.root();
+        Assert.assertEquals(document.tagName(root), "root");
+        Assert.assertEquals(document.attributeSize(root), 2);
+        Assert.assertEquals(document.attributeName(root, 1), "b");
+        Assert.assertEquals(document.attributeValue(root, 1), "x&y");
+
+        var text = document.firstChild(root);
+        Assert.assertTrue(document.isText(text));
+        Assert.assertEquals(document.text(text).strip(), "文本");
+
+        var user = document.nextSibling(text);
+        Assert.assertEquals(document.tagName(user), "user");
+        Assert.assertEquals(document.attributeValue(user, 0), "7");
+
+        var name = document.firstChild(user);
+        Assert.assertEquals(document.text(document.firstChild(name)), "小明");
+
+        var tag = document.nextSibling(name);
+        Assert.assertTrue(document.useSelfClosing(tag));
+        Assert.assertTrue(document.isEmpty(tag));
+        Assert.assertFalse(document.useSelfClosing(document.nextSibling(tag)));
+
+        var empty = document.nextSibling(document.nextSibling(user));
+        Assert.assertEquals(document.tagName(empty), "empty");
+        Assert.assertEquals(document.nextSibling(empty), CompactDocument.NONE);
+    }
+
+}
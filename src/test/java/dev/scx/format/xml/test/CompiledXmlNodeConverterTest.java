@@ -0,0 +1,293 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.FormatToNodeException;
+import dev.scx.format.xml.XmlBufferPool;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.XmlWriterBackend;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.node.ArrayNode;
+import dev.scx.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class CompiledXmlNodeConverterTest {
+
+    private static final String xml = """
+        <root>
+            <user id="1">
+                <name>小明</name>
+                <tags>a</tags>
+                <tags>b</tags>
+                <empty/>
+            </user>
+        </root>
+        """;
+
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws Exception {
+        test1();
+        test2();
+        test3();
+        test4();
+        test5();
+        test6();
+        test7();
+        test8();
+        test9();
+        test10();
+    }
+
+    /// 预编译结果应与逐次调用一致
+    @Test
+    public static void test1() {
+        var options = new XmlNodeConverterOptions();
+        var compiled = xmlNodeConverter.compile(options);
+
+        var expected = xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode(xml, options), options);
+        var actual = compiled.nodeToFormatString(compiled.formatToNode(xml));
+
+        Assert.assertEquals(actual, expected);
+    }
+
+    /// 预编译后再修改 options 不应影响已编译的实例
+    @Test
+    public static void test2() {
+        var options = new XmlNodeConverterOptions();
+        var compiled = xmlNodeConverter.compile(options);
+        options.rootName("changed");
+
+        Assert.assertEquals(compiled.options().rootName(), "root");
+        Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode("<a>1</a>")), "<root>1</root>");
+    }
+
+    /// 同一个实例可以在多个线程中并发使用
+    @Test
+    public static void test3() throws InterruptedException, ExecutionException {
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions());
+        var expected = compiled.nodeToFormatString(compiled.formatToNode(xml));
+
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            var tasks = new ArrayList<Callable<String>>();
+            for (int i = 0; i < 200; i++) {
+                tasks.add(() -> compiled.nodeToFormatString(compiled.formatToNode(xml)));
+            }
+            for (Future<String> future : executor.invokeAll(tasks)) {
+                Assert.assertEquals(future.get(), expected);
+            }
+        }
+    }
+
+    /// 不同文档中的同名元素和属性 应该是同一个 String 实例
+    @Test
+    public static void test4() throws XMLStreamException, IOException {
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions()).xmlElementConverter();
+        var user1 = (TagElement) ((TagElement) compiled.formatToElement(xml)).children().getFirst();
+        var user2 = (TagElement) ((TagElement) compiled.formatToElement(xml)).children().getFirst();
+
+        Assert.assertSame(user1.tagName(), user2.tagName());
+        Assert.assertSame(user1.attributeAt(0).name(), user2.attributeAt(0).name());
+    }
+
+    /// byte[] 和 ByteBuffer (堆内存, 直接内存, 非 UTF-8) 的结果应与 String 一致
+    @Test
+    public static void test5() {
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions());
+        var expected = compiled.nodeToFormatString(compiled.formatToNode(xml));
+        var bytes = xml.getBytes(UTF_8);
+
+        Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(bytes, UTF_8)), expected);
+
+        // 带有偏移量的堆内存 buffer
+        var heap = ByteBuffer.allocate(bytes.length + 10);
+        heap.position(5);
+        heap.put(bytes);
+        heap.flip().position(5);
+        Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(heap.slice(), UTF_8)), expected);
+        Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(heap, UTF_8)), expected);
+        Assert.assertEquals(heap.position(), 5);
+
+        var direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(direct, UTF_8)), expected);
+        Assert.assertEquals(direct.position(), 0);
+
+        var gbk = Charset.forName("GBK");
+        Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(ByteBuffer.wrap(xml.getBytes(gbk)), gbk)), expected);
+    }
+
+    /// 使用 FileChannel 写出 和 MappedByteBuffer 读取 (窗口很小, 覆盖跨窗口的情况), 以及非 UTF-8 的文件
+    @Test
+    public static void test6() throws IOException {
+        var options = new XmlNodeConverterOptions().mappedFileInput(true).channelFileOutput(true).fileBufferSize(7);
+        var compiled = xmlNodeConverter.compile(options);
+        var node = compiled.formatToNode(xml);
+        var expected = compiled.nodeToFormatString(node);
+
+        var file = File.createTempFile("scx-format-xml-", ".xml");
+        try {
+            compiled.nodeToFormatFile(node, file, UTF_8);
+            Assert.assertEquals(Files.readString(file.toPath()), expected);
+            Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(file, UTF_8)), expected);
+
+            var gbk = Charset.forName("GBK");
+            Files.write(file.toPath(), xml.getBytes(gbk));
+            Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(file, gbk)), expected);
+            var defaultCompiled = xmlNodeConverter.compile(new XmlNodeConverterOptions());
+            Assert.assertEquals(defaultCompiled.nodeToFormatString(defaultCompiled.formatToNode(file, gbk)), expected);
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /// 批量转换, 结果按输入顺序返回, 单个条目的异常不影响其他条目
+    @Test
+    public static void test7() {
+        var options = new XmlNodeConverterOptions().batchConcurrency(3);
+        var compiled = xmlNodeConverter.compile(options);
+        var inputs = new ArrayList<byte[]>();
+        for (int i = 0; i < 50; i++) {
+            inputs.add((i == 7 ? "<root>" + i : "<root>" + i + "</root>").getBytes(UTF_8));
+        }
+
+        var results = compiled.formatToNodeAll(inputs, UTF_8);
+        Assert.assertEquals(results.size(), 50);
+        Assert.assertFalse(results.get(7).isSuccess());
+        Assert.assertTrue(results.get(7).error() instanceof FormatToNodeException);
+        Assert.assertEquals(compiled.nodeToFormatString(results.get(8).value()), "<root>8</root>");
+
+        var streamResults = compiled.formatToNodeAll(inputs.stream().map(ByteArrayInputStream::new), UTF_8);
+        Assert.assertEquals(streamResults.size(), 50);
+        Assert.assertFalse(streamResults.get(7).isSuccess());
+
+        var nodes = results.stream().filter(r -> r.isSuccess()).map(r -> r.value()).toList();
+        var bytes = compiled.nodeToFormatAll(nodes, UTF_8);
+        for (int i = 0; i < nodes.size(); i++) {
+            Assert.assertEquals(bytes.get(i).value(), compiled.nodeToFormatBytes(nodes.get(i), UTF_8));
+        }
+        Assert.assertEquals(compiled.formatToNodeAll(List.<byte[]>of(), UTF_8), List.of());
+        Assert.assertEquals(compiled.formatToNodeAll(Stream.<ByteArrayInputStream>empty(), UTF_8), List.of());
+    }
+
+    /// 缓冲区池: 归还后的缓冲区会被再次借出, 复用的缓冲区不影响输出
+    @Test
+    public static void test8() throws IOException {
+        var pool = new XmlBufferPool(1, 2, 1);
+        var options = new XmlNodeConverterOptions().writerBackend(XmlWriterBackend.FAST).channelFileOutput(true).fileBufferSize(64).bufferPool(pool);
+        var compiled = xmlNodeConverter.compile(options);
+        var node = compiled.formatToNode(xml);
+        var expected = compiled.nodeToFormatBytes(node, UTF_8);
+        Assert.assertEquals(pool.misses(), 1);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(compiled.nodeToFormatBytes(node, UTF_8), expected);
+        }
+        Assert.assertEquals(pool.hits(), 10);
+        Assert.assertEquals(pool.misses(), 1);
+
+        var file = File.createTempFile("scx-format-xml-", ".xml");
+        try {
+            for (int i = 0; i < 3; i++) {
+                compiled.nodeToFormatFile(node, file, UTF_8);
+                Assert.assertEquals(Files.readAllBytes(file.toPath()), expected);
+            }
+            // 直接内存缓冲区 和 写出文件时的 byte[] 缓冲区 都只有第一次未命中
+            Assert.assertEquals(pool.misses(), 2);
+
+            // 容量不同的调用方未命中, 但不会取走池中已有的缓冲区
+            var other = xmlNodeConverter.compile(new XmlNodeConverterOptions().writerBackend(XmlWriterBackend.FAST).channelFileOutput(true).fileBufferSize(128).bufferPool(pool));
+            other.nodeToFormatFile(node, file, UTF_8);
+            Assert.assertEquals(pool.misses(), 3);
+            compiled.nodeToFormatFile(node, file, UTF_8);
+            Assert.assertEquals(pool.misses(), 3);
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /// 默认配置下 从 InputStream 解析和写出为 byte[] 同样会复用缓冲区池
+    @Test
+    public static void test9() throws IOException {
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions());
+        var pool = XmlBufferPool.shared();
+        var input = xml.getBytes(UTF_8);
+        var expected = compiled.nodeToFormatBytes(compiled.formatToNode(input, UTF_8), UTF_8);
+        var inputs = new ArrayList<byte[]>();
+        for (int i = 0; i < 200; i++) {
+            inputs.add(input);
+        }
+
+        var hits = pool.hits();
+        var misses = pool.misses();
+        var results = compiled.formatToNodeAll(inputs.stream().map(ByteArrayInputStream::new), UTF_8);
+        var nodes = results.stream().map(r -> r.value()).toList();
+        var bytes = compiled.nodeToFormatAll(nodes, UTF_8);
+        for (var result : bytes) {
+            Assert.assertEquals(result.value(), expected);
+        }
+        var newHits = pool.hits() - hits;
+        var newMisses = pool.misses() - misses;
+        // 每次解析和写出各借出一次
+        Assert.assertEquals(newHits + newMisses, 400);
+        // 只有每个分段第一次 (或并发较多时) 才会未命中
+        Assert.assertTrue(newHits > newMisses * 4, "hits: " + newHits + ", misses: " + newMisses);
+
+        // 超过池中数组大小的输入和输出
+        var sb = new StringBuilder("<root>");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("<item>").append(i).append("</item>");
+        }
+        sb.append("</root>");
+        var large = sb.toString().getBytes(UTF_8);
+        var node = compiled.formatToNode(new ByteArrayInputStream(large), UTF_8);
+        Assert.assertEquals(((ArrayNode) ((ObjectNode) node).get("item")).size(), 2000);
+        Assert.assertEquals(compiled.nodeToFormatBytes(node, UTF_8), large);
+    }
+
+    /// 无论输入长度 (是否能放入池中的数组) 和输入类型, 都按照传入的 charset 解码, 而不是 XML 声明中的 encoding
+    @Test
+    public static void test10() throws IOException {
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions());
+        var file = File.createTempFile("scx-format-xml-", ".xml");
+        try {
+            for (var count : List.of(10, 5000)) {
+                var sb = new StringBuilder("<root><v>é中</v>");
+                for (int i = 0; i < count; i++) {
+                    sb.append("<item>").append(i).append("</item>");
+                }
+                var body = sb.append("</root>").toString();
+                var expected = compiled.nodeToFormatString(compiled.formatToNode(body));
+                // 声明的编码与实际的编码不一致
+                var bytes = ("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" + body).getBytes(UTF_8);
+                Assert.assertEquals(bytes.length > 16 * 1024, count > 10);
+                Files.write(file.toPath(), bytes);
+
+                Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(new ByteArrayInputStream(bytes), UTF_8)), expected);
+                Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(bytes, UTF_8)), expected);
+                Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(ByteBuffer.wrap(bytes), UTF_8)), expected);
+                Assert.assertEquals(compiled.nodeToFormatString(compiled.formatToNode(file, UTF_8)), expected);
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+}
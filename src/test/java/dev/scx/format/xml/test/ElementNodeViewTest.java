@@ -0,0 +1,86 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.ElementNodeConverter;
+import dev.scx.format.xml.XmlElementConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.node.ArrayNode;
+import dev.scx.node.NullNode;
+import dev.scx.node.StringNode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.util.List;
+
+public class ElementNodeViewTest {
+
+    private final static String xml = """
+        <root version="1">
+            前
+            <user id="7" tag="a"><name>小明</name><tag>b</tag></user>
+            <user id="8"/>
+            <empty/>
+            <blank></blank>
+            <texts>1<x/>2</texts>
+            后
+        </root>
+        """;
+
+    private static final XmlElementConverter xmlElementConverter = new XmlElementConverter();
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws XMLStreamException, IOException {
+        test1();
+        test2();
+    }
+
+    /// 完整转换的结果应与 elementToNode 一致
+    @Test
+    public static void test1() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions();
+        var element = (TagElement) xmlElementConverter.formatToElement(xml, options);
+        var converter = new ElementNodeConverter(options);
+
+        var view = converter.elementToNodeView(element);
+        // 先访问部分 key, 再完整转换, 结果依然一致
+        view.get("user");
+        view.view("texts");
+        Assert.assertEquals(
+            xmlNodeConverter.nodeToFormatString(view.toNode(), options),
+            xmlNodeConverter.nodeToFormatString(converter.elementToNode(element), options)
+        );
+    }
+
+    /// 按需访问
+    @Test
+    public static void test2() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions();
+        var element = (TagElement) xmlElementConverter.formatToElement(xml, options);
+        var view = new ElementNodeConverter(options).elementToNodeView(element);
+
+        Assert.assertTrue(view.isObject());
+        Assert.assertEquals(List.copyOf(view.keys()), List.of("version", "user", "empty", "blank", "texts", ""));
+        Assert.assertEquals(((StringNode) view.get("version")).asString(), "1");
+        Assert.assertNull(view.get("none"));
+        Assert.assertSame(view.get("user"), view.get("user"));
+
+        // 同名子元素 没有单一视图
+        Assert.assertNull(view.view("user"));
+        var users = view.views("user");
+        Assert.assertEquals(users.size(), 2);
+        var first = users.get(0);
+        Assert.assertEquals(((StringNode) first.view("name").toNode()).asString(), "小明");
+        // 同名的属性和子元素合并为数组
+        var tag = (ArrayNode) first.get("tag");
+        Assert.assertEquals(tag.size(), 2);
+        Assert.assertEquals(((StringNode) tag.get(1)).asString(), "b");
+
+        Assert.assertFalse(view.view("empty").isObject());
+        Assert.assertSame(view.view("empty").toNode(), NullNode.NULL);
+        Assert.assertEquals(((StringNode) view.view("blank").toNode()).asString(), "");
+    }
+
+}
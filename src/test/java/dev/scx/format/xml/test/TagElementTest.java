@@ -0,0 +1,86 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.element.Attribute;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.format.xml.element.TextElement;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TagElementTest {
+
+    public static void main(String[] args) {
+        test1();
+        test2();
+    }
+
+    /// 按需分配的列表 对外依然表现为可修改的 List
+    @Test
+    public static void test1() {
+        var tagElement = new TagElement("a", false);
+        Assert.assertTrue(tagElement.isEmpty());
+        Assert.assertTrue(tagElement.isAttributeEmpty());
+
+        tagElement.add(new TextElement("1"));
+        Assert.assertEquals(tagElement.size(), 1);
+
+        // children() 返回的列表和 TagElement 共享状态
+        var children = tagElement.children();
+        children.add(new TextElement("2"));
+        tagElement.add(new TextElement("3"));
+        Assert.assertEquals(tagElement.size(), 3);
+        Assert.assertSame(tagElement.children(), children);
+        tagElement.clear();
+        Assert.assertTrue(children.isEmpty());
+
+        tagElement.ensureAttributeCapacity(3);
+        tagElement.addAttribute("x", "1");
+        tagElement.addAttribute(new Attribute("y", "2"));
+        Assert.assertEquals(tagElement.attributeSize(), 2);
+        Assert.assertEquals(tagElement.attributeAt(1).value(), "2");
+        tagElement.attributes().removeFirst();
+        Assert.assertEquals(tagElement.attributeAt(0).name(), "y");
+    }
+
+    /// 按名称查找, 数量超过阈值后使用索引, 修改后索引失效
+    @Test
+    public static void test2() {
+        var tagElement = new TagElement("root", false);
+        for (int i = 0; i < 20; i++) {
+            var child = new TagElement(i % 2 == 0 ? "even" : "odd", true);
+            child.addAttribute("i", String.valueOf(i));
+            tagElement.add(child);
+            tagElement.addAttribute("a" + i, String.valueOf(i));
+        }
+
+        Assert.assertEquals(tagElement.children("even").size(), 10);
+        Assert.assertEquals(tagElement.child("odd").attribute("i").value(), "1");
+        Assert.assertNull(tagElement.child("none"));
+        Assert.assertEquals(tagElement.attribute("a15").value(), "15");
+        Assert.assertNull(tagElement.attribute("b"));
+
+        // 修改后索引失效
+        tagElement.add(new TagElement("none", false));
+        Assert.assertNotNull(tagElement.child("none"));
+        tagElement.children().removeFirst();
+        Assert.assertEquals(tagElement.children("even").size(), 9);
+        tagElement.attributes().add(new Attribute("b", "x"));
+        Assert.assertEquals(tagElement.attribute("b").value(), "x");
+
+        // 数量不变的修改 (通过之前持有的视图或迭代器) 同样会使索引失效
+        var children = tagElement.children();
+        children.set(0, new TagElement("replaced", true));
+        Assert.assertNotNull(tagElement.child("replaced"));
+        Assert.assertEquals(tagElement.child("odd").attribute("i").value(), "3");
+        var iterator = tagElement.iterator();
+        iterator.next();
+        iterator.remove();
+        Assert.assertNull(tagElement.child("replaced"));
+        children.add(children.remove(0));
+        Assert.assertEquals(tagElement.child("even").attribute("i").value(), "4");
+        tagElement.attributes().set(0, new Attribute("c", "y"));
+        Assert.assertEquals(tagElement.attribute("c").value(), "y");
+        tagElement.clearAttributes();
+        Assert.assertNull(tagElement.attribute("a15"));
+    }
+
+}
@@ -0,0 +1,67 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class XmlAsyncParserTest {
+
+    private static final String xml = """
+        <root>
+            <user id="1">
+                一些额外文本
+                <name>小明&#128640;</name>
+                <content>包含 &lt;b&gt;HTML&lt;/b&gt; 标签</content>
+                <tags>a</tags>
+                <tags>b</tags>
+                <empty/>
+            </user>
+        </root>
+        """;
+
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws XMLStreamException {
+        test1();
+        test2();
+    }
+
+    /// 逐字节喂入的结果应与阻塞解析一致
+    @Test
+    public static void test1() throws XMLStreamException {
+        var options = new XmlNodeConverterOptions();
+        var bytes = xml.getBytes(UTF_8);
+        var buffer = ByteBuffer.allocate(1);
+
+        try (var parser = xmlNodeConverter.createAsyncParser(options)) {
+            for (var b : bytes) {
+                buffer.clear();
+                buffer.put(b).flip();
+                parser.feed(buffer);
+            }
+            parser.endOfInput();
+
+            var expected = xmlNodeConverter.formatToNode(xml, options);
+            Assert.assertEquals(
+                xmlNodeConverter.nodeToFormatString(parser.node(), options),
+                xmlNodeConverter.nodeToFormatString(expected, options)
+            );
+        }
+    }
+
+    /// 不完整的文档应在 endOfInput 时报错
+    @Test
+    public static void test2() throws XMLStreamException {
+        try (var parser = xmlNodeConverter.createAsyncParser(new XmlNodeConverterOptions())) {
+            parser.feed(ByteBuffer.wrap("<root><a>1</a>".getBytes(UTF_8)));
+            Assert.assertThrows(XMLStreamException.class, parser::endOfInput);
+        }
+    }
+
+}
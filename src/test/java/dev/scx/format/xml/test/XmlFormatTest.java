@@ -2,10 +2,22 @@ package dev.scx.format.xml.test;
 
 import dev.scx.format.FormatToNodeException;
 import dev.scx.format.NodeToFormatException;
+import dev.scx.format.xml.ElementNodeConverter;
 import dev.scx.format.xml.XmlNodeConverter;
 import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.XmlWriterBackend;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.format.xml.element.TextElement;
+import dev.scx.node.*;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class XmlFormatTest {
 
     private final static String xml = """
@@ -96,8 +108,14 @@ public class XmlFormatTest {
 
     private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
 
-    public static void main(String[] args) throws FormatToNodeException, NodeToFormatException {
+    public static void main(String[] args) throws FormatToNodeException, NodeToFormatException, XMLStreamException, IOException {
         test1();
+        test2();
+        test3();
+        test4();
+        test5();
+        test6();
+        test7();
     }
 
     @Test
@@ -109,4 +127,154 @@ public class XmlFormatTest {
 
     }
 
+    /// 直接构建 Node 的结果应与 先构建 Element 再转换 的结果一致
+    @Test
+    public static void test2() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions();
+        var element = xmlNodeConverter.xmlElementConverter().formatToElement(xml, options);
+        var expected = new ElementNodeConverter(options).elementToNode(element);
+
+        var actual = xmlNodeConverter.formatToNode(xml, options);
+
+        Assert.assertEquals(toXml(actual, options), toXml(expected, options));
+    }
+
+    /// 使用 Element 路径序列化, 用于比较两个 Node 的结构
+    private static String toXml(Node node, XmlNodeConverterOptions options) throws XMLStreamException, IOException {
+        var element = new ElementNodeConverter(options).nodeToElement(node);
+        return xmlNodeConverter.xmlElementConverter().elementToFormatString(element, options);
+    }
+
+    /// 直接写出 Node 的结果应与 先构建 Element 再序列化 的结果逐字节相同
+    @Test
+    public static void test3() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions();
+
+        // 顶级数组, 嵌套数组, null, "" key
+        var array = new ArrayNode();
+        array.add(new StringNode("1"));
+        var nested = new ArrayNode();
+        nested.add(new StringNode("2"));
+        nested.add(NullNode.NULL);
+        array.add(nested);
+        var object = new ObjectNode();
+        object.put("", new StringNode("text"));
+        object.put("a", new StringNode("a&<>\"'"));
+        object.put("b", new ObjectNode());
+        array.add(object);
+
+        var nodes = new Node[]{xmlNodeConverter.formatToNode(xml, options), array, object, NullNode.NULL, new StringNode("")};
+
+        for (var node : nodes) {
+            var element = new ElementNodeConverter(options).nodeToElement(node);
+            var expected = xmlNodeConverter.xmlElementConverter().elementToFormatBytes(element, UTF_8, options);
+            var actual = xmlNodeConverter.nodeToFormatBytes(node, UTF_8, options);
+            Assert.assertEquals(actual, expected);
+        }
+    }
+
+    /// 深度远超线程栈承受能力的嵌套结构, 在放开 maxNestingDepth 后也可以正常转换
+    @Test
+    public static void test4() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions().maxNestingDepth(Integer.MAX_VALUE);
+        var converter = new ElementNodeConverter(options);
+
+        var root = new ObjectNode();
+        var curr = root;
+        for (int i = 0; i < 100000; i++) {
+            var next = new ObjectNode();
+            curr.put("a", next);
+            curr = next;
+        }
+        curr.put("b", new StringNode("end"));
+
+        var element = converter.nodeToElement(root);
+        var expected = xmlNodeConverter.xmlElementConverter().elementToFormatString(element, options);
+
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(root, options), expected);
+        Assert.assertEquals(toXml(converter.elementToNode(element), options), expected);
+    }
+
+    /// FAST 和 STAX 的输出应逐字节相同 (包括各种需要转义的字符)
+    @Test
+    public static void test5() throws XMLStreamException, IOException {
+        var stax = xmlNodeConverter.compile(new XmlNodeConverterOptions());
+        var fast = xmlNodeConverter.compile(new XmlNodeConverterOptions().writerBackend(XmlWriterBackend.FAST));
+
+        var object = new ObjectNode();
+        object.put("gt", new StringNode(">a>b]]>c]>"));
+        object.put("escape", new StringNode("a<b&c\"d'e\tf\ng\rh"));
+        object.put("unicode", new StringNode("中文 é 🚀"));
+        object.put("empty", new StringNode(""));
+        // 超过写出缓冲区大小的纯 ASCII 文本 (整段复制的快速路径)
+        object.put("base64", new StringNode("QUJDRA==".repeat(3000)));
+        // 较长的干净前缀之后才出现需要转义的字符 (前缀整段复制, 之后从该处继续转义)
+        object.put("prefix", new StringNode("QUJDRA==".repeat(3000) + "]>a<b中文]]>"));
+        object.put("null", NullNode.NULL);
+        var array = new ArrayNode();
+        array.add(object);
+        array.add(new ArrayNode());
+
+        var nodes = new Node[]{xmlNodeConverter.formatToNode(xml, new XmlNodeConverterOptions()), object, array, NullNode.NULL, new StringNode("x")};
+        for (var node : nodes) {
+            var expected = stax.nodeToFormatBytes(node, UTF_8);
+            Assert.assertEquals(fast.nodeToFormatBytes(node, UTF_8), expected);
+            var outputStream = new ByteArrayOutputStream();
+            fast.nodeToFormat(node, outputStream, UTF_8);
+            Assert.assertEquals(outputStream.toByteArray(), expected);
+        }
+
+        var element = new TagElement("root", false);
+        element.addAttribute("a", "1<2 & \"3\" > 4\t\n\r");
+        var child = new TagElement("child", true);
+        child.addAttribute("b", "");
+        element.add(child);
+        element.add(new TagElement("open", false));
+        Assert.assertEquals(
+            fast.xmlElementConverter().elementToFormatBytes(element, UTF_8),
+            stax.xmlElementConverter().elementToFormatBytes(element, UTF_8)
+        );
+    }
+
+    /// 开启 coalescing 后, 文本和 CDATA 合并为一个文本节点
+    @Test
+    public static void test6() throws XMLStreamException, IOException {
+        var longText = "x".repeat(100000);
+        var xml = "<root>\n    <a>" + longText + "<![CDATA[<b>]]>" + longText + "</a>\n</root>";
+
+        var options = new XmlNodeConverterOptions().coalescing(true);
+        var expected = longText + "<b>" + longText;
+
+        var node = (ObjectNode) xmlNodeConverter.formatToNode(xml, options);
+        Assert.assertEquals(((StringNode) node.get("a")).asString(), expected);
+
+        var element = (TagElement) xmlNodeConverter.xmlElementConverter().formatToElement(xml, options);
+        Assert.assertEquals(element.children().size(), 1);
+        Assert.assertEquals(toXml(new ElementNodeConverter(options).elementToNode(element), options), toXml(node, options));
+    }
+
+    /// 并行转换的结果应与顺序转换完全一致 (包括同名子元素合并为数组的顺序)
+    @Test
+    public static void test7() throws XMLStreamException, IOException {
+        var root = new TagElement("root", false);
+        root.addAttribute("item", "attr");
+        for (int i = 0; i < 2000; i++) {
+            var item = new TagElement(i % 3 == 0 ? "item" : "other" + (i % 7), false);
+            for (int j = 0; j < 40; j++) {
+                var child = new TagElement("v", false);
+                child.add(new TextElement(i + "-" + j));
+                item.add(child);
+            }
+            root.add(item);
+            if (i % 100 == 0) {
+                root.add(new TextElement("text" + i));
+            }
+        }
+
+        var options = new XmlNodeConverterOptions();
+        var expected = toXml(new ElementNodeConverter(options).elementToNode(root), options);
+        var parallelOptions = new XmlNodeConverterOptions().parallelThreshold(16);
+        Assert.assertEquals(toXml(new ElementNodeConverter(parallelOptions).elementToNode(root), options), expected);
+    }
+
 }
@@ -0,0 +1,173 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.*;
+import dev.scx.node.StringNode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class XmlMetricsTest {
+
+    private final static String xml = """
+        <root a="1">
+            <b>x</b>
+            <c/>
+            <d><e>y</e></d>
+        </root>
+        """;
+
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws XMLStreamException, IOException {
+        test1();
+        test2();
+        test3();
+    }
+
+    /// 解析和写出
+    @Test
+    public static void test1() {
+        var metrics = new ArrayList<XmlMetrics>();
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions().metricsListener(metrics::add));
+
+        var bytes = xml.getBytes(UTF_8);
+        var node = compiled.formatToNode(bytes, UTF_8);
+        Assert.assertEquals(metrics.size(), 1);
+        var parse = metrics.get(0);
+        Assert.assertEquals(parse.operation(), XmlOperation.FORMAT_TO_NODE);
+        Assert.assertEquals(parse.bytesIn(), bytes.length);
+        Assert.assertEquals(parse.elementCount(), 5);
+        Assert.assertEquals(parse.attributeCount(), 1);
+        // 缩进不计入
+        Assert.assertEquals(parse.textCount(), 2);
+        Assert.assertEquals(parse.maxDepth(), 3);
+        Assert.assertTrue(parse.success());
+        Assert.assertEquals(parse.serializeNanos(), 0);
+
+        // {"a": "1", "b": "x", "c": null, "d": {"e": "y"}}, 属性被写出为子元素
+        var output = compiled.nodeToFormatBytes(node, UTF_8);
+        Assert.assertEquals(metrics.size(), 2);
+        var serialize = metrics.get(1);
+        Assert.assertEquals(serialize.operation(), XmlOperation.NODE_TO_FORMAT);
+        Assert.assertEquals(serialize.bytesOut(), output.length);
+        Assert.assertEquals(serialize.bytesIn(), -1);
+        Assert.assertEquals(serialize.elementCount(), 6);
+        Assert.assertEquals(serialize.textCount(), 3);
+        Assert.assertEquals(serialize.maxDepth(), 3);
+        Assert.assertTrue(serialize.success());
+
+        // 失败时依然会回调
+        Assert.assertThrows(() -> compiled.formatToNode("<root><a></root>"));
+        Assert.assertEquals(metrics.size(), 3);
+        Assert.assertFalse(metrics.get(2).success());
+    }
+
+    /// Element 与 Node 之间的转换
+    @Test
+    public static void test2() throws XMLStreamException, IOException {
+        var metrics = new ArrayList<XmlMetrics>();
+        var options = new XmlNodeConverterOptions().metricsListener(metrics::add);
+        var element = xmlNodeConverter.xmlElementConverter().formatToElement(xml, options);
+        var converter = new ElementNodeConverter(options);
+        converter.elementToNode(element);
+
+        Assert.assertEquals(metrics.size(), 2);
+        Assert.assertEquals(metrics.get(0).operation(), XmlOperation.FORMAT_TO_ELEMENT);
+        var convert = metrics.get(1);
+        Assert.assertEquals(convert.operation(), XmlOperation.ELEMENT_TO_NODE);
+        // 与解析时统计的结果一致
+        Assert.assertEquals(convert.elementCount(), metrics.get(0).elementCount());
+        Assert.assertEquals(convert.attributeCount(), 1);
+        Assert.assertEquals(convert.textCount(), 2);
+        Assert.assertEquals(convert.maxDepth(), 3);
+        Assert.assertEquals(convert.parseNanos(), 0);
+        Assert.assertTrue(convert.success());
+
+        // 并行转换时 各任务的统计合并后结果相同
+        new ElementNodeConverter(new XmlNodeConverterOptions().metricsListener(metrics::add).parallelThreshold(1)).elementToNode(element);
+        Assert.assertEquals(metrics.size(), 3);
+        var parallel = metrics.get(2);
+        Assert.assertEquals(parallel.elementCount(), convert.elementCount());
+        Assert.assertEquals(parallel.attributeCount(), 1);
+        Assert.assertEquals(parallel.textCount(), 2);
+        Assert.assertEquals(parallel.maxDepth(), 3);
+
+        // 未配置 listener 时不会回调
+        new ElementNodeConverter(new XmlNodeConverterOptions()).elementToNode(element);
+        Assert.assertEquals(metrics.size(), 3);
+    }
+
+    /// 惰性读取, 异步解析, 逐条写出 和 CompactDocument 同样会被统计
+    @Test
+    public static void test3() throws XMLStreamException, IOException {
+        var metrics = new ArrayList<XmlMetrics>();
+        var compiled = xmlNodeConverter.compile(new XmlNodeConverterOptions().metricsListener(metrics::add));
+
+        // Stream 读取完毕时回调
+        try (var records = compiled.streamRecords(new StringReader(xml), "/root/*")) {
+            Assert.assertEquals(records.toList().size(), 3);
+            Assert.assertEquals(metrics.size(), 1);
+        }
+        Assert.assertEquals(metrics.size(), 1);
+        var stream = metrics.get(0);
+        Assert.assertEquals(stream.operation(), XmlOperation.FORMAT_TO_NODE);
+        Assert.assertEquals(stream.elementCount(), 5);
+        Assert.assertEquals(stream.textCount(), 2);
+        Assert.assertTrue(stream.success());
+
+        // 提前关闭时视为未成功
+        try (var query = compiled.query(new StringReader(xml), XmlQuery.compile("/root/b"))) {
+            Assert.assertTrue(query.findFirst().isPresent());
+            Assert.assertEquals(metrics.size(), 1);
+        }
+        Assert.assertEquals(metrics.size(), 2);
+        Assert.assertFalse(metrics.get(1).success());
+
+        var document = compiled.xmlElementConverter().formatToCompactDocument(xml);
+        Assert.assertEquals(metrics.get(2).operation(), XmlOperation.FORMAT_TO_ELEMENT);
+        Assert.assertEquals(metrics.get(2).elementCount(), 5);
+        compiled.elementNodeConverter().compactDocumentToNode(document);
+        var convert = metrics.get(3);
+        Assert.assertEquals(convert.operation(), XmlOperation.ELEMENT_TO_NODE);
+        Assert.assertEquals(convert.elementCount(), 5);
+        Assert.assertEquals(convert.attributeCount(), 1);
+        Assert.assertEquals(convert.textCount(), 2);
+        Assert.assertEquals(convert.maxDepth(), 3);
+
+        // 异步解析在 endOfInput 时回调, close 不会重复回调
+        var bytes = xml.getBytes(UTF_8);
+        try (var parser = compiled.createAsyncParser()) {
+            parser.feed(ByteBuffer.wrap(bytes));
+            parser.endOfInput();
+        }
+        Assert.assertEquals(metrics.size(), 5);
+        var async = metrics.get(4);
+        Assert.assertEquals(async.operation(), XmlOperation.FORMAT_TO_ELEMENT);
+        Assert.assertEquals(async.bytesIn(), bytes.length);
+        Assert.assertEquals(async.elementCount(), 5);
+        Assert.assertEquals(async.attributeCount(), 1);
+        Assert.assertEquals(async.textCount(), 2);
+        Assert.assertEquals(async.maxDepth(), 3);
+        Assert.assertTrue(async.success());
+
+        // 逐条写出在 close 时回调
+        try (var recordWriter = compiled.openRecordWriter(new StringWriter())) {
+            recordWriter.write(new StringNode("x"));
+            recordWriter.write(new StringNode("y"));
+        }
+        Assert.assertEquals(metrics.size(), 6);
+        var write = metrics.get(5);
+        Assert.assertEquals(write.operation(), XmlOperation.NODE_TO_FORMAT);
+        Assert.assertEquals(write.elementCount(), 3);
+        Assert.assertTrue(write.success());
+    }
+
+}
@@ -0,0 +1,117 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.ElementNodeConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.node.NullNode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+
+public class XmlProjectionTest {
+
+    private final static String xml = """
+        <root version="1">
+            文本
+            <user id="a">
+                <id>1</id>
+                <name>小明</name>
+                <profile><id>x</id></profile>
+            </user>
+            <user>
+                <id type="int">2</id>
+            </user>
+            <posts>
+                <post><title>标题1</title><body>...</body></post>
+                <draft><title>标题2</title></draft>
+                <post/>
+            </posts>
+            <other><title>忽略</title></other>
+        </root>
+        """;
+
+    private final static String expectedXml = """
+        <root>
+            <user><id>1</id></user>
+            <user><id type="int">2</id></user>
+            <posts>
+                <post><title>标题1</title></post>
+                <draft><title>标题2</title></draft>
+            </posts>
+        </root>
+        """;
+
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws XMLStreamException, IOException {
+        test1();
+        test2();
+        test3();
+    }
+
+    /// Node, Element, CompactDocument 三种解析方式的投影结果应一致, 没有 title 的 `<post/>` 不保留
+    @Test
+    public static void test1() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions().projection("/root/user/id", "/root/posts/*/title");
+        var expected = xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode(expectedXml, new XmlNodeConverterOptions()), options);
+
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode(xml, options), options), expected);
+
+        var xmlElementConverter = xmlNodeConverter.xmlElementConverter();
+        var elementNodeConverter = new ElementNodeConverter(options);
+        var element = xmlElementConverter.formatToElement(xml, options);
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(elementNodeConverter.elementToNode(element), options), expected);
+        var document = xmlElementConverter.formatToCompactDocument(xml, options);
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(elementNodeConverter.compactDocumentToNode(document), options), expected);
+    }
+
+    /// 根元素不匹配 和 非法路径
+    @Test
+    public static void test2() {
+        var options = new XmlNodeConverterOptions().projection("/other/user");
+        Assert.assertSame(xmlNodeConverter.formatToNode(xml, options), NullNode.NULL);
+        var element = (TagElement) xmlNodeConverter.xmlElementConverter().formatToElement(xml, options);
+        Assert.assertTrue(element.useSelfClosing());
+        Assert.assertEquals(element.size(), 0);
+        Assert.assertSame(new ElementNodeConverter(options).compactDocumentToNode(xmlNodeConverter.xmlElementConverter().formatToCompactDocument(xml, options)), NullNode.NULL);
+
+        // 保留根元素本身 等同于不投影
+        var all = new XmlNodeConverterOptions().projection("/*");
+        Assert.assertEquals(
+            xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode(xml, all), all),
+            xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode(xml, new XmlNodeConverterOptions()), all)
+        );
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> new XmlNodeConverterOptions().projection("root/user"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new XmlNodeConverterOptions().projection("/root//user"));
+    }
+
+    /// `*` 匹配到的兄弟元素 没有命中任何后代时不保留
+    @Test
+    public static void test3() throws XMLStreamException, IOException {
+        var xml = """
+            <root>
+                <posts>
+                    <p1><id>1</id><title>标题1</title><content>...</content><comments><c>1</c></comments></p1>
+                    <p2><id>2</id><content>...</content></p2>
+                    <p3/>
+                </posts>
+                <meta><title>忽略</title></meta>
+            </root>
+            """;
+        var options = new XmlNodeConverterOptions().projection("/root/posts/*/title");
+        var expected = xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode("<root><posts><p1><title>标题1</title></p1></posts></root>", new XmlNodeConverterOptions()), options);
+
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(xmlNodeConverter.formatToNode(xml, options), options), expected);
+        var xmlElementConverter = xmlNodeConverter.xmlElementConverter();
+        var elementNodeConverter = new ElementNodeConverter(options);
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(elementNodeConverter.elementToNode(xmlElementConverter.formatToElement(xml, options)), options), expected);
+        Assert.assertEquals(xmlNodeConverter.nodeToFormatString(elementNodeConverter.compactDocumentToNode(xmlElementConverter.formatToCompactDocument(xml, options)), options), expected);
+        // Element 中同样只有通往 title 的元素
+        Assert.assertEquals(xmlElementConverter.elementToFormatString(xmlElementConverter.formatToElement(xml, options), options), "<root><posts><p1><title>标题1</title></p1></posts></root>");
+    }
+
+}
@@ -0,0 +1,96 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.xml.XmlElementConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.XmlQuery;
+import dev.scx.format.xml.element.Element;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.node.Node;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class XmlQueryTest {
+
+    private final static String xml = """
+        <root>
+            <user id="1" type="vip"><name>小明</name><tag>a</tag><tag>b</tag></user>
+            <user id="2"><name>小红</name></user>
+            <group>
+                <user id="3" type="vip"><name>小刚</name></user>
+            </group>
+            <posts>
+                <post><title>t1</title></post>
+                <post><title>t2</title></post>
+            </posts>
+        </root>
+        """;
+
+    private static final XmlElementConverter xmlElementConverter = new XmlElementConverter();
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws XMLStreamException, IOException {
+        test1();
+        test2();
+        test3();
+    }
+
+    /// 内存模式
+    @Test
+    public static void test1() throws XMLStreamException, IOException {
+        var root = (TagElement) xmlElementConverter.formatToElement(xml, new XmlNodeConverterOptions());
+
+        Assert.assertEquals(XmlQuery.compile("/root/user/name").selectValues(root), List.of("小明", "小红"));
+        Assert.assertEquals(XmlQuery.compile("//user/name").selectValues(root), List.of("小明", "小红", "小刚"));
+        Assert.assertEquals(XmlQuery.compile("//user[@type='vip']/@id").selectValues(root), List.of("1", "3"));
+        Assert.assertEquals(XmlQuery.compile("//user[@type]/name").selectValues(root), List.of("小明", "小刚"));
+        Assert.assertEquals(XmlQuery.compile("/root/user[2]/@id").selectValues(root), List.of("2"));
+        Assert.assertEquals(XmlQuery.compile("//user[@type=\"vip\"][2]/@id").selectValues(root), List.of());
+        Assert.assertEquals(XmlQuery.compile("//tag[2]").selectValues(root), List.of("b"));
+        Assert.assertEquals(XmlQuery.compile("/root/posts/*/title").selectValues(root), List.of("t1", "t2"));
+        Assert.assertEquals(XmlQuery.compile("//@*").selectValues(root), List.of("1", "vip", "2", "3", "vip"));
+        Assert.assertEquals(XmlQuery.compile("/other").select(root), List.of());
+
+        var users = XmlQuery.compile("//user").select(root);
+        Assert.assertEquals(users.size(), 3);
+        Assert.assertEquals(users.get(2).attributeAt(0).value(), "3");
+    }
+
+    /// 流式模式的结果应与内存模式一致
+    @Test
+    public static void test2() throws XMLStreamException, IOException {
+        var options = new XmlNodeConverterOptions();
+        var root = (TagElement) xmlElementConverter.formatToElement(xml, options);
+
+        for (var expression : List.of("/root/user", "//user[@type='vip']", "/root/posts/post[2]/title", "//name")) {
+            var query = XmlQuery.compile(expression);
+            var expected = query.select(root).stream().map(TagElement::toString).toList();
+
+            List<String> actual;
+            try (var stream = xmlElementConverter.query(new StringReader(xml), query, options)) {
+                actual = stream.map(Element::toString).toList();
+            }
+            Assert.assertEquals(actual, expected);
+        }
+
+        List<Node> ids;
+        try (var stream = xmlNodeConverter.query(new StringReader(xml), XmlQuery.compile("//user/@id"), options)) {
+            ids = stream.toList();
+        }
+        Assert.assertEquals(ids.stream().map(n -> xmlNodeConverter.nodeToFormatString(n, options)).toList(), List.of("<root>1</root>", "<root>2</root>", "<root>3</root>"));
+    }
+
+    /// 语法错误
+    @Test
+    public static void test3() {
+        for (var expression : List.of("", "root", "/root/", "/@id/name", "/root[0]", "/root[@a='1]", "/@id[1]")) {
+            Assert.assertThrows(IllegalArgumentException.class, () -> XmlQuery.compile(expression));
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package dev.scx.format.xml.test;
+
+import dev.scx.format.FormatToNodeException;
+import dev.scx.format.NodeToFormatException;
+import dev.scx.format.xml.XmlMetrics;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.node.ArrayNode;
+import dev.scx.node.ObjectNode;
+import dev.scx.node.StringNode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class XmlRecordTest {
+
+    private static final XmlNodeConverter xmlNodeConverter = new XmlNodeConverter();
+
+    public static void main(String[] args) throws IOException {
+        test1();
+        test2();
+        test3();
+        test4();
+    }
+
+    /// 记录数量超过 maxChildCount 时依然可以逐条读取
+    @Test
+    public static void test1() {
+        var sb = new StringBuilder("<root><meta>skip</meta><items>");
+        for (int i = 0; i < 100; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>n").append(i).append("</name></item>");
+        }
+        sb.append("</items></root>");
+
+        var options = new XmlNodeConverterOptions().maxChildCount(10);
+
+        try (var records = xmlNodeConverter.streamRecords(new StringReader(sb.toString()), "/root/items/item", options)) {
+            var list = records.toList();
+            Assert.assertEquals(list.size(), 100);
+            var expected = xmlNodeConverter.formatToNode("<item id=\"42\"><name>n42</name></item>", options);
+            Assert.assertEquals(
+                xmlNodeConverter.nodeToFormatString(list.get(42), options),
+                xmlNodeConverter.nodeToFormatString(expected, options)
+            );
+        }
+    }
+
+    /// maxChildCount 依然作用于每条记录内部
+    @Test
+    public static void test2() {
+        var xml = "<root><item><a/><a/><a/></item></root>";
+        var options = new XmlNodeConverterOptions().maxChildCount(2);
+
+        try (var records = xmlNodeConverter.streamRecords(new StringReader(xml), "/root/*", options)) {
+            Assert.assertThrows(FormatToNodeException.class, records::toList);
+        }
+    }
+
+    /// 逐条写出的结果应与一次性写出 ArrayNode 的结果相同
+    @Test
+    public static void test3() throws NodeToFormatException {
+        var options = new XmlNodeConverterOptions();
+        var array = new ArrayNode();
+        var writer = new StringWriter();
+
+        try (var recordWriter = xmlNodeConverter.openRecordWriter(writer, options)) {
+            for (int i = 0; i < 100; i++) {
+                var record = new ObjectNode();
+                record.put("id", new StringNode(String.valueOf(i)));
+                recordWriter.write(record);
+                array.add(record);
+                if (i % 10 == 0) {
+                    recordWriter.flush();
+                }
+            }
+        }
+
+        Assert.assertEquals(writer.toString(), xmlNodeConverter.nodeToFormatString(array, options));
+    }
+
+    /// 并行分块解析的结果应与顺序解析一致, 切分点只落在记录上, 落在注释中时回退到顺序解析
+    @Test
+    public static void test4() throws IOException {
+        var sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root version=\"1\">前");
+        for (int i = 0; i < 3000; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>名称").append(i).append("</name><v>&lt;").append(i).append("</v></item>\n");
+            if (i % 500 == 0) {
+                sb.append("<other>").append(i).append("</other>");
+            }
+        }
+        var text = sb.append("后</root>\n").toString();
+        // 注释比一块更长, 其中的 <item> 一定会被当作切分点, 对应的块无法单独解析
+        var commented = text.replace("<item id=\"1500\">", "<!-- " + "<item> ".repeat(2000) + "--><item id=\"1500\">");
+
+        // 并行解析成功时数量记为 -1, 回退到顺序解析时为实际数量
+        var metrics = new ArrayList<XmlMetrics>();
+        var options = new XmlNodeConverterOptions().maxChildCount(10000).parallelChunkSize(4096);
+        var compiled = xmlNodeConverter.compile(options);
+        var probed = xmlNodeConverter.compile(new XmlNodeConverterOptions().maxChildCount(10000).parallelChunkSize(4096).metricsListener(metrics::add));
+        var file = File.createTempFile("scx-format-xml-", ".xml");
+        try {
+            for (var content : List.of(text, commented)) {
+                Files.writeString(file.toPath(), content);
+                var fallback = content.equals(commented);
+                Assert.assertEquals(
+                    compiled.nodeToFormatString(probed.formatToNodeParallel(file, UTF_8)),
+                    compiled.nodeToFormatString(compiled.formatToNode(file, UTF_8))
+                );
+                Assert.assertEquals(metrics.size(), 1);
+                Assert.assertEquals(metrics.get(0).elementCount() < 0, !fallback);
+                Assert.assertTrue(metrics.get(0).success());
+                metrics.clear();
+
+                List<String> expected;
+                try (var records = compiled.streamRecords(new StringReader(content), "/root/item")) {
+                    expected = records.map(compiled::nodeToFormatString).toList();
+                }
+                try (var records = probed.streamRecordsParallel(file, UTF_8, "/root/item")) {
+                    Assert.assertEquals(records.map(compiled::nodeToFormatString).toList(), expected);
+                }
+                Assert.assertEquals(metrics.size(), 1);
+                Assert.assertEquals(metrics.get(0).elementCount() < 0, !fallback);
+                Assert.assertTrue(metrics.get(0).success());
+                metrics.clear();
+                Assert.assertEquals(expected.size(), 3000);
+            }
+
+            // 根元素的子元素数量依然受 maxChildCount 限制
+            var limited = xmlNodeConverter.compile(new XmlNodeConverterOptions().maxChildCount(1000).parallelChunkSize(4096));
+            Assert.assertThrows(FormatToNodeException.class, () -> limited.formatToNodeParallel(file, UTF_8));
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package dev.scx.format.xml.test.benchmark;
+
+import dev.scx.format.xml.CompiledXmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.node.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/// 对比 每次调用创建工厂 和 预编译转换器 的单次调用开销
+///
+/// @author scx567888
+/// @version 0.0.1
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompiledXmlNodeConverterBenchmark {
+
+    private XmlNodeConverter xmlNodeConverter;
+    private XmlNodeConverterOptions options;
+    private CompiledXmlNodeConverter compiledXmlNodeConverter;
+    private Node node;
+    private String xml;
+
+    @Setup
+    public void setup() {
+        this.xml = XmlCorpus.small();
+        this.xmlNodeConverter = new XmlNodeConverter();
+        this.options = new XmlNodeConverterOptions();
+        this.compiledXmlNodeConverter = xmlNodeConverter.compile(options);
+        this.node = compiledXmlNodeConverter.formatToNode(xml);
+    }
+
+    @Benchmark
+    public Node formatToNodePerCall() {
+        return xmlNodeConverter.formatToNode(xml, options);
+    }
+
+    @Benchmark
+    public Node formatToNodeCompiled() {
+        return compiledXmlNodeConverter.formatToNode(xml);
+    }
+
+    @Benchmark
+    public String nodeToFormatStringPerCall() {
+        return xmlNodeConverter.nodeToFormatString(node, options);
+    }
+
+    @Benchmark
+    public String nodeToFormatStringCompiled() {
+        return compiledXmlNodeConverter.nodeToFormatString(node);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+            .include(CompiledXmlNodeConverterBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opt).run();
+    }
+
+}
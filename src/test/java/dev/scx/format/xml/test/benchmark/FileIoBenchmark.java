@@ -0,0 +1,85 @@
+package dev.scx.format.xml.test.benchmark;
+
+import dev.scx.format.xml.CompiledXmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.node.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/// 对比 默认的文件读写 和 MappedByteBuffer 读取 / FileChannel 写出
+///
+/// @author scx567888
+/// @version 0.0.1
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileIoBenchmark {
+
+    /// default: FileInputStream / FileOutputStream, channel: MappedByteBuffer / FileChannel
+    @Param({"default", "channel"})
+    public String mode;
+
+    private CompiledXmlNodeConverter compiledXmlNodeConverter;
+    private File inputFile;
+    private File outputFile;
+    private Node node;
+
+    @Setup
+    public void setup() throws IOException {
+        var options = new XmlNodeConverterOptions();
+        if ("channel".equals(mode)) {
+            options.mappedFileInput(true).channelFileOutput(true);
+        }
+        this.compiledXmlNodeConverter = new XmlNodeConverter().compile(options);
+        // 约 16MB, 4000 条记录, 每条记录带有较长的文本
+        var text = "0123456789abcdef".repeat(256);
+        var sb = new StringBuilder("<records>");
+        for (int i = 0; i < 4000; i++) {
+            sb.append("<record><id>").append(i).append("</id><data>").append(text).append("</data></record>");
+        }
+        sb.append("</records>");
+        this.inputFile = File.createTempFile("scx-format-xml-input-", ".xml");
+        this.outputFile = File.createTempFile("scx-format-xml-output-", ".xml");
+        Files.writeString(inputFile.toPath(), sb, UTF_8);
+        this.node = compiledXmlNodeConverter.formatToNode(inputFile, UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile.toPath());
+        Files.deleteIfExists(outputFile.toPath());
+    }
+
+    @Benchmark
+    public Node formatToNodeFile() throws IOException {
+        return compiledXmlNodeConverter.formatToNode(inputFile, UTF_8);
+    }
+
+    @Benchmark
+    public File nodeToFormatFile() throws IOException {
+        return compiledXmlNodeConverter.nodeToFormatFile(node, outputFile, UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+            .include(FileIoBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,79 @@
+package dev.scx.format.xml.test.benchmark;
+
+import dev.scx.format.xml.CompiledXmlElementConverter;
+import dev.scx.format.xml.XmlElementConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.element.Element;
+import dev.scx.format.xml.element.TagElement;
+import dev.scx.format.xml.element.TextElement;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/// TagElement 的分配开销, 需要配合 GCProfiler 查看 gc.alloc.rate.norm (每次调用分配的字节数)
+///
+/// 每次调用构建 1000 个 `<item id="..."><name>...</name><value>...</value></item>`, 即 3000 个 TagElement
+///
+/// @author scx567888
+/// @version 0.0.1
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TagElementAllocationBenchmark {
+
+    private CompiledXmlElementConverter compiledXmlElementConverter;
+    private String xml;
+
+    @Setup
+    public void setup() {
+        this.compiledXmlElementConverter = new XmlElementConverter().compile(new XmlNodeConverterOptions());
+        var sb = new StringBuilder("<root>");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>n").append(i).append("</name><value>").append(i * 7).append("</value></item>");
+        }
+        sb.append("</root>");
+        this.xml = sb.toString();
+    }
+
+    /// 只构建 TagElement, 排除解析器本身的分配
+    @Benchmark
+    public TagElement build() {
+        var root = new TagElement("root", false);
+        for (int i = 0; i < 1000; i++) {
+            var item = new TagElement("item", false);
+            item.ensureAttributeCapacity(1);
+            item.addAttribute("id", "1");
+            var name = new TagElement("name", false);
+            name.add(new TextElement("n"));
+            var value = new TagElement("value", false);
+            value.add(new TextElement("7"));
+            item.add(name);
+            item.add(value);
+            root.add(item);
+        }
+        return root;
+    }
+
+    @Benchmark
+    public Element formatToElement() throws XMLStreamException, IOException {
+        return compiledXmlElementConverter.formatToElement(xml);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+            .include(TagElementAllocationBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,99 @@
+package dev.scx.format.xml.test.benchmark;
+
+/// 基准测试使用的文档, 均在默认 XmlNodeConverterOptions 的限制之内
+///
+/// @author scx567888
+/// @version 0.0.1
+public final class XmlCorpus {
+
+    /// 所有文档的名称, 可直接用于 JMH 的 @Param
+    public static final String SMALL = "small";
+    public static final String WIDE = "wide";
+    public static final String DEEP = "deep";
+    public static final String TEXT = "text";
+    public static final String ATTRIBUTE = "attribute";
+
+    private XmlCorpus() {
+
+    }
+
+    public static String corpus(String name) {
+        return switch (name) {
+            case SMALL -> small();
+            case WIDE -> wide();
+            case DEEP -> deep();
+            case TEXT -> text();
+            case ATTRIBUTE -> attribute();
+            default -> throw new IllegalArgumentException("Unknown corpus: " + name);
+        };
+    }
+
+    /// 较小的 SOAP 风格报文
+    public static String small() {
+        return """
+            <envelope>
+                <header>
+                    <requestId>8f14e45f-ceea-467f-a0e6-1b1a3b7a1e2c</requestId>
+                    <timestamp>2025-07-09T12:34:56Z</timestamp>
+                </header>
+                <body>
+                    <getUser>
+                        <id>12345</id>
+                        <fields>name</fields>
+                        <fields>email</fields>
+                    </getUser>
+                </body>
+            </envelope>
+            """;
+    }
+
+    /// 一个父元素下有大量同名子元素 (会被合并为数组)
+    public static String wide() {
+        var sb = new StringBuilder("<users>");
+        for (int i = 0; i < 4000; i++) {
+            sb.append("<user><id>").append(i).append("</id><name>user").append(i).append("</name><active>").append(i % 2 == 0).append("</active></user>");
+        }
+        return sb.append("</users>").toString();
+    }
+
+    /// 深层嵌套, 每层都带有少量兄弟元素
+    public static String deep() {
+        var depth = 150;
+        var sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            sb.append("<level").append(i).append("><index>").append(i).append("</index>");
+        }
+        sb.append("<leaf>end</leaf>");
+        for (int i = depth - 1; i >= 0; i--) {
+            sb.append("</level").append(i).append(">");
+        }
+        return sb.toString();
+    }
+
+    /// 以长文本为主, 包含实体, CDATA 和混合内容
+    public static String text() {
+        var paragraph = "Lorem ipsum dolor sit amet, consectetur adipiscing elit &amp; sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. 中文内容也需要覆盖到, 包括 &lt;转义&gt; 字符. ";
+        var sb = new StringBuilder("<article><title>Text heavy</title>");
+        for (int i = 0; i < 200; i++) {
+            sb.append("<p>").append(paragraph.repeat(5)).append("</p>");
+            if (i % 10 == 0) {
+                sb.append("<code><![CDATA[if (a < b && c > d) { return \"x\"; }]]></code>");
+            }
+        }
+        return sb.append("</article>").toString();
+    }
+
+    /// 数据都保存在属性中
+    public static String attribute() {
+        var sb = new StringBuilder("<rows>");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("<row");
+            for (int j = 0; j < 20; j++) {
+                sb.append(" c").append(j).append("=\"").append(i * j).append("\"");
+            }
+            sb.append("/>");
+        }
+        return sb.append("</rows>").toString();
+    }
+
+}
@@ -0,0 +1,141 @@
+package dev.scx.format.xml.test.benchmark;
+
+import dev.scx.format.xml.CompiledXmlElementConverter;
+import dev.scx.format.xml.CompiledXmlNodeConverter;
+import dev.scx.format.xml.ElementNodeConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.element.Element;
+import dev.scx.node.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/// 分别测量 解析, 转换, 序列化 各个阶段, 以及 XmlNodeConverter 各个入口的完整开销.
+///
+/// 配合 GCProfiler 可以同时看到吞吐量和分配速率, 也可以通过 `mvn -P benchmark test` 运行.
+///
+/// @author scx567888
+/// @version 0.0.1
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlStageBenchmark {
+
+    @Param({XmlCorpus.SMALL, XmlCorpus.WIDE, XmlCorpus.DEEP, XmlCorpus.TEXT, XmlCorpus.ATTRIBUTE})
+    public String corpus;
+
+    private CompiledXmlNodeConverter compiledXmlNodeConverter;
+    private CompiledXmlElementConverter compiledXmlElementConverter;
+    private ElementNodeConverter elementNodeConverter;
+    private String xml;
+    private byte[] bytes;
+    private File inputFile;
+    private File outputFile;
+    private Element element;
+    private Node node;
+
+    @Setup
+    public void setup() throws IOException, XMLStreamException {
+        this.compiledXmlNodeConverter = new XmlNodeConverter().compile(new XmlNodeConverterOptions());
+        this.compiledXmlElementConverter = compiledXmlNodeConverter.xmlElementConverter();
+        this.elementNodeConverter = compiledXmlNodeConverter.elementNodeConverter();
+        this.xml = XmlCorpus.corpus(corpus);
+        this.bytes = xml.getBytes(UTF_8);
+        this.inputFile = File.createTempFile("scx-format-xml-input-", ".xml");
+        this.outputFile = File.createTempFile("scx-format-xml-output-", ".xml");
+        Files.write(inputFile.toPath(), bytes);
+        this.element = compiledXmlElementConverter.formatToElement(xml);
+        this.node = elementNodeConverter.elementToNode(element);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile.toPath());
+        Files.deleteIfExists(outputFile.toPath());
+    }
+
+    //***************** 单独的阶段 *******************
+
+    /// XmlDeserializer.deserialize
+    @Benchmark
+    public Element deserialize() throws XMLStreamException, IOException {
+        return compiledXmlElementConverter.formatToElement(xml);
+    }
+
+    @Benchmark
+    public Node elementToNode() {
+        return elementNodeConverter.elementToNode(element);
+    }
+
+    @Benchmark
+    public Element nodeToElement() {
+        return elementNodeConverter.nodeToElement(node);
+    }
+
+    /// XmlSerializer.serialize
+    @Benchmark
+    public String serialize() throws XMLStreamException, IOException {
+        return compiledXmlElementConverter.elementToFormatString(element);
+    }
+
+    //***************** 完整的入口 *******************
+
+    @Benchmark
+    public Node formatToNodeString() {
+        return compiledXmlNodeConverter.formatToNode(xml);
+    }
+
+    @Benchmark
+    public Node formatToNodeBytes() {
+        return compiledXmlNodeConverter.formatToNode(bytes, UTF_8);
+    }
+
+    @Benchmark
+    public Node formatToNodeInputStream() throws IOException {
+        return compiledXmlNodeConverter.formatToNode(new ByteArrayInputStream(bytes), UTF_8);
+    }
+
+    @Benchmark
+    public Node formatToNodeFile() throws IOException {
+        return compiledXmlNodeConverter.formatToNode(inputFile, UTF_8);
+    }
+
+    @Benchmark
+    public String nodeToFormatString() {
+        return compiledXmlNodeConverter.nodeToFormatString(node);
+    }
+
+    @Benchmark
+    public byte[] nodeToFormatBytes() {
+        return compiledXmlNodeConverter.nodeToFormatBytes(node, UTF_8);
+    }
+
+    @Benchmark
+    public File nodeToFormatFile() throws IOException {
+        return compiledXmlNodeConverter.nodeToFormatFile(node, outputFile, UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+            .include(XmlStageBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,65 @@
+package dev.scx.format.xml.test.benchmark;
+
+import dev.scx.format.xml.CompiledXmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverter;
+import dev.scx.format.xml.XmlNodeConverterOptions;
+import dev.scx.format.xml.XmlWriterBackend;
+import dev.scx.node.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/// 对比 STAX 和 FAST 两种写出实现
+///
+/// @author scx567888
+/// @version 0.0.1
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlWriterBackendBenchmark {
+
+    @Param({XmlCorpus.SMALL, XmlCorpus.WIDE, XmlCorpus.DEEP, XmlCorpus.TEXT, XmlCorpus.ATTRIBUTE})
+    public String corpus;
+
+    @Param({"STAX", "FAST"})
+    public XmlWriterBackend backend;
+
+    private CompiledXmlNodeConverter compiledXmlNodeConverter;
+    private Node node;
+
+    @Setup
+    public void setup() {
+        var options = new XmlNodeConverterOptions().writerBackend(backend);
+        this.compiledXmlNodeConverter = new XmlNodeConverter().compile(options);
+        this.node = compiledXmlNodeConverter.formatToNode(XmlCorpus.corpus(corpus));
+    }
+
+    @Benchmark
+    public byte[] nodeToFormatBytes() {
+        return compiledXmlNodeConverter.nodeToFormatBytes(node, UTF_8);
+    }
+
+    @Benchmark
+    public void nodeToFormatOutputStream() throws Exception {
+        compiledXmlNodeConverter.nodeToFormat(node, OutputStream.nullOutputStream(), UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+            .include(XmlWriterBackendBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opt).run();
+    }
+
+}